@@ -0,0 +1,48 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.benchmarks;
+
+import static edu.wpi.first.units.Units.RotationsPerSecond;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.subsystems.flywheel.Flywheel;
+import frc.robot.subsystems.flywheel.FlywheelIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Cost of one loop of the flywheel's velocity commands against an IO that does nothing. */
+@State(Scope.Thread)
+public class FlywheelBenchmark {
+  private Flywheel flywheel;
+  private Command runVelocityFixed;
+  private Command runVelocityTunable;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    HAL.initialize(500, 0);
+    flywheel = new Flywheel(new FlywheelIO() {});
+    runVelocityFixed = flywheel.runVelocity(RotationsPerSecond.of(50));
+    runVelocityTunable = flywheel.runVelocity();
+    runVelocityFixed.initialize();
+    runVelocityTunable.initialize();
+  }
+
+  @Benchmark
+  public void runVelocityFixed() {
+    runVelocityFixed.execute();
+  }
+
+  @Benchmark
+  public void runVelocityTunable() {
+    runVelocityTunable.execute();
+  }
+
+  @Benchmark
+  public void periodic() {
+    flywheel.periodic();
+  }
+}
@@ -0,0 +1,43 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.benchmarks;
+
+import edu.wpi.first.hal.HAL;
+import frc.robot.utils.LoggedTunableNumber;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Cost of reading tunable numbers and checking them for changes. */
+@State(Scope.Thread)
+public class LoggedTunableNumberBenchmark {
+  private LoggedTunableNumber kP;
+  private LoggedTunableNumber kI;
+  private LoggedTunableNumber kD;
+  private Consumer<double[]> action;
+  private double sink = 0.0;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    HAL.initialize(500, 0);
+    kP = new LoggedTunableNumber("Benchmark/kP", 1.0);
+    kI = new LoggedTunableNumber("Benchmark/kI", 0.0);
+    kD = new LoggedTunableNumber("Benchmark/kD", 0.0);
+    action = values -> sink += values[0];
+  }
+
+  @Benchmark
+  public double get() {
+    return kP.get();
+  }
+
+  /** The unchanged case, which is what almost every loop sees. */
+  @Benchmark
+  public double ifChanged() {
+    LoggedTunableNumber.ifChanged(hashCode(), action, kP, kI, kD);
+    return sink;
+  }
+}
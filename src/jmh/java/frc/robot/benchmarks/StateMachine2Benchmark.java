@@ -0,0 +1,65 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.benchmarks;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.robot.utils.State2;
+import frc.robot.utils.StateMachine2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Steady-state cost of a {@link StateMachine2} loop. Every state has end conditions and an {@link
+ * State2#onTrigger} transition that never fire, so each op measures evaluating them, not
+ * transitioning.
+ */
+@State(Scope.Thread)
+public class StateMachine2Benchmark {
+  @Param({"2", "10", "100"})
+  public int stateCount;
+
+  private StateMachine2 machine;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    HAL.initialize(500, 0);
+    machine = new StateMachine2(new SubsystemBase() {});
+    State2[] states = new State2[stateCount];
+    for (int i = 0; i < stateCount; i++) {
+      states[i] = i == 0 ? machine.defaultState("S0") : machine.state("S" + i);
+    }
+    for (int i = 0; i < stateCount; i++) {
+      State2 next = states[(i + 1) % stateCount];
+      states[i]
+          .withEndCondition(() -> false, () -> next)
+          .withEndCondition(() -> false, () -> next)
+          .onTrigger(new Trigger(() -> false), () -> next);
+    }
+    machine.periodic();
+    machine.periodicAfterScheduler();
+  }
+
+  /** End condition evaluation in {@link StateMachine2#periodicAfterScheduler()}. */
+  @Benchmark
+  public void periodicAfterScheduler() {
+    machine.periodicAfterScheduler();
+  }
+
+  /**
+   * A full scheduler loop plus the state machine, which includes evaluating the active state's
+   * {@link State2#onTrigger} transitions.
+   */
+  @Benchmark
+  public void onTriggerEvaluation() {
+    machine.periodic();
+    CommandScheduler.getInstance().run();
+    machine.periodicAfterScheduler();
+  }
+}
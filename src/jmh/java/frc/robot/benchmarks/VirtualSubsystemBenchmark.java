@@ -0,0 +1,48 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.benchmarks;
+
+import edu.wpi.first.hal.HAL;
+import frc.robot.utils.VirtualSubsystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Overhead of running, timing and scheduling virtual subsystems that do almost no work. */
+@State(Scope.Thread)
+public class VirtualSubsystemBenchmark {
+  private static final int INSTANCES = 10;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    HAL.initialize(500, 0);
+    for (int i = 0; i < INSTANCES; i++) {
+      new VirtualSubsystem() {
+        private long counter = 0;
+
+        @Override
+        public void periodic() {
+          counter++;
+        }
+
+        @Override
+        public void periodicAfterScheduler() {
+          counter--;
+        }
+      };
+    }
+  }
+
+  @Benchmark
+  public void runAllPeriodic() {
+    VirtualSubsystem.runAllPeriodic();
+  }
+
+  @Benchmark
+  public void runBothPhases() {
+    VirtualSubsystem.runAllPeriodic();
+    VirtualSubsystem.runAllPeriodicAfterScheduler();
+  }
+}
@@ -12,12 +12,21 @@ import edu.wpi.first.wpilibj.RobotBase;
 /**
  * This class defines the runtime mode used by AdvantageKit. The mode is always "real" when running
  * on a roboRIO. Change the value of "simMode" to switch between "sim" (physics sim) and "replay"
- * (log replay from a file).
+ * (log replay from a file). It can also be overridden with the ROBOT_SIM_MODE environment variable
+ * (e.g. "ROBOT_SIM_MODE=REPLAY"), which {@link frc.robot.tools.BatchReplay} uses.
  */
 public final class Constants {
-  public static final Mode simMode = Mode.SIM;
+  public static final Mode simMode = readModeEnv("ROBOT_SIM_MODE", Mode.SIM);
   public static final Mode currentMode = RobotBase.isReal() ? Mode.REAL : simMode;
 
+  /**
+   * Match-seconds to run a headless, faster-than-real-time simulation for, read from the
+   * HEADLESS_SIM_SECONDS environment variable (e.g. "HEADLESS_SIM_SECONDS=150 ./gradlew
+   * simulateJava"). 0 runs the normal real-time simulation. Scripted controller inputs are read
+   * from HEADLESS_SIM_SCRIPT; see {@link frc.robot.sim.HeadlessSimRunner}.
+   */
+  public static final double headlessSimSeconds = readDoubleEnv("HEADLESS_SIM_SECONDS", 0.0);
+
   public static enum Mode {
     /** Running on a real robot. */
     REAL,
@@ -29,6 +38,22 @@ public final class Constants {
     REPLAY
   }
 
+  private static Mode readModeEnv(String name, Mode defaultValue) {
+    String value = System.getenv(name);
+    if (value == null || value.isBlank()) {
+      return defaultValue;
+    }
+    return Mode.valueOf(value.trim().toUpperCase());
+  }
+
+  private static double readDoubleEnv(String name, double defaultValue) {
+    String value = System.getenv(name);
+    if (value == null || value.isBlank()) {
+      return defaultValue;
+    }
+    return Double.parseDouble(value.trim());
+  }
+
   public static class IDs {
     public static final int SHOOTER_LEADER = 23;
     public static final int SHOOTER_FOLLLOWER = 3;
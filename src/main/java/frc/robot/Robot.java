@@ -8,8 +8,13 @@
 package frc.robot;
 
 import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.sim.HeadlessSimRunner;
+import frc.robot.tools.ReplayStats;
+import frc.robot.utils.StartupConfigurator;
 import frc.robot.utils.VirtualSubsystem;
+import frc.robot.utils.VirtualSubsystem.FastTierMode;
 import org.littletonrobotics.junction.LogFileUtil;
 import org.littletonrobotics.junction.LoggedRobot;
 import org.littletonrobotics.junction.Logger;
@@ -25,7 +30,12 @@ import org.littletonrobotics.urcl.URCL;
  * project.
  */
 public class Robot extends LoggedRobot {
+  /** Longest time to wait for motor controllers to be configured at startup, in seconds. */
+  private static final double STARTUP_CONFIG_TIMEOUT_SECONDS = 10.0;
+
   private final RobotContainer m_RobotContainer;
+  private HeadlessSimRunner headlessSimRunner = null;
+  private ReplayStats replayStats = null;
 
   public Robot() {
     // Record metadata
@@ -51,16 +61,29 @@ public class Robot extends LoggedRobot {
         break;
 
       case SIM:
-        // Running a physics simulator, log to NT
-        Logger.addDataReceiver(new NT4Publisher());
+        if (Constants.headlessSimSeconds > 0) {
+          // Headless simulation, run as fast as possible on simulated time and log to a file
+          setUseTiming(false);
+          SimHooks.pauseTiming();
+          VirtualSubsystem.setFastTierMode(FastTierMode.SYNCHRONOUS);
+          Logger.addDataReceiver(new WPILOGWriter());
+        } else {
+          // Running a physics simulator, log to NT
+          Logger.addDataReceiver(new NT4Publisher());
+        }
         break;
 
       case REPLAY:
         // Replaying a log, set up replay source
         setUseTiming(false); // Run as fast as possible
+        // Fast control loops re-run their logged ticks instead of running on their own
+        VirtualSubsystem.setFastTierMode(FastTierMode.REPLAYED);
         String logPath = LogFileUtil.findReplayLog();
         Logger.setReplaySource(new WPILOGReader(logPath));
         Logger.addDataReceiver(new WPILOGWriter(LogFileUtil.addPathSuffix(logPath, "_sim")));
+        // The logger exits the process when the log ends, so report loop timing on shutdown
+        replayStats = new ReplayStats();
+        Runtime.getRuntime().addShutdownHook(new Thread(replayStats::print));
         break;
     }
 
@@ -69,14 +92,24 @@ public class Robot extends LoggedRobot {
     DataLogManager.start();
     URCL.start();
     m_RobotContainer = new RobotContainer();
+    // the container's IOs submitted their motor controller configs, which run concurrently
+    StartupConfigurator.awaitAll(STARTUP_CONFIG_TIMEOUT_SECONDS);
+
+    if (Constants.currentMode == Constants.Mode.SIM && Constants.headlessSimSeconds > 0) {
+      headlessSimRunner = new HeadlessSimRunner(m_RobotContainer, Constants.headlessSimSeconds);
+    }
   }
 
   /** This function is called periodically during all modes. */
   @Override
   public void robotPeriodic() {
+    long start = System.nanoTime();
     VirtualSubsystem.runAllPeriodic();
     CommandScheduler.getInstance().run();
     VirtualSubsystem.runAllPeriodicAfterScheduler();
+    if (replayStats != null) {
+      replayStats.record(System.nanoTime() - start);
+    }
   }
 
   /** This function is called once when the robot is disabled. */
@@ -117,5 +150,9 @@ public class Robot extends LoggedRobot {
 
   /** This function is called periodically whilst in simulation. */
   @Override
-  public void simulationPeriodic() {}
+  public void simulationPeriodic() {
+    if (headlessSimRunner != null) {
+      headlessSimRunner.periodic();
+    }
+  }
 }
@@ -1,28 +1,42 @@
 package frc.robot;
 
-import static edu.wpi.first.units.Units.RotationsPerSecond;
-
+import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
 import frc.robot.Constants.IDs;
+import frc.robot.subsystems.flywheel.Configs.SignalProfile;
 import frc.robot.subsystems.flywheel.Flywheel;
 import frc.robot.subsystems.flywheel.FlywheelIO;
 import frc.robot.subsystems.flywheel.FlywheelIODoubleSparkFlex;
+import frc.robot.subsystems.flywheel.FlywheelIOSim;
+import frc.robot.utils.InterpolatingTable;
+import frc.robot.utils.InterpolatingTable.Interpolation;
 import frc.robot.utils.State2;
 import frc.robot.utils.StateMachine2;
+import java.io.IOException;
+import lombok.Getter;
 
 public class RobotContainer {
   public final Flywheel flywheel;
 
+  /** The simulated flywheel, when running in SIM mode. */
+  @Getter private FlywheelIOSim flywheelSim = null;
+
+  @Getter private StateMachine2 flywheelStates;
+
   public final CommandXboxController controller = new CommandXboxController(0);
 
+  /** Flywheel setpoints by distance, from src/main/deploy/shooter_map.csv. */
+  @Getter private final InterpolatingTable shooterMap = loadShooterMap();
+
   public RobotContainer() {
     switch (Constants.currentMode) {
       case REAL:
         flywheel =
             new Flywheel(new FlywheelIODoubleSparkFlex(IDs.SHOOTER_LEADER, IDs.SHOOTER_FOLLLOWER));
         break;
-      case REPLAY:
-        flywheel = new Flywheel(new FlywheelIO() {});
+      case SIM:
+        flywheelSim = new FlywheelIOSim();
+        flywheel = new Flywheel(flywheelSim);
         break;
       default:
         flywheel = new Flywheel(new FlywheelIO() {});
@@ -42,17 +56,38 @@ public class RobotContainer {
     // controller.x().whileTrue(flywheel.getSysIDFactory().getRoutine().dynamic(Direction.kForward));
     // controller.y().whileTrue(flywheel.getSysIDFactory().getRoutine().dynamic(Direction.kReverse));
 
-    StateMachine2 flywheelStates =
-        new StateMachine2(flywheel).restartOnTeleop().publishToNT("FlywheelStates");
-    State2 RUNNINGREV = flywheelStates.state("RUNNINGREV").whileRunning(flywheel.runVelocity());
+    flywheelStates = new StateMachine2(flywheel).restartOnTeleop().publishToNT("FlywheelStates");
+    State2 RUNNINGREV =
+        flywheelStates
+            .state("RUNNINGREV")
+            .whileRunning(flywheel.runVelocity())
+            .onEnter(flywheel.requestSignalProfile(SignalProfile.RUNNING));
+    State2 RUNNINGLQR =
+        flywheelStates
+            .state("RUNNINGLQR")
+            .whileRunning(flywheel.runVelocityLQR())
+            .onEnter(flywheel.requestSignalProfile(SignalProfile.RUNNING));
     // State2 RUNNINGWPI =
     // flywheelStates.state("RUNNINGWPI").whileRunning(flywheel.runVelocityWPI());
     State2 OFF =
         flywheelStates
             .defaultState("OFF")
-            .whileRunning(flywheel.runVelocity(RotationsPerSecond.of(400 / 60.0)))
-            .onTrigger(controller.rightBumper(), () -> RUNNINGREV);
+            .whileRunning(flywheel.idle())
+            .onEnter(flywheel.requestSignalProfile(SignalProfile.IDLE))
+            .onTrigger(controller.rightBumper(), () -> RUNNINGREV)
+            .onTrigger(controller.y(), () -> RUNNINGLQR);
     RUNNINGREV.onTrigger(controller.rightBumper(), () -> OFF);
+    RUNNINGLQR.onTrigger(controller.y(), () -> OFF);
     // RUNNINGWPI.onTrigger(controller.rightBumper(), () -> OFF);
   }
+
+  private static InterpolatingTable loadShooterMap() {
+    try {
+      return InterpolatingTable.fromCsv(
+          Filesystem.getDeployDirectory().toPath().resolve("shooter_map.csv"),
+          Interpolation.SPLINE);
+    } catch (IOException e) {
+      throw new RuntimeException("Could not load the shooter map", e);
+    }
+  }
 }
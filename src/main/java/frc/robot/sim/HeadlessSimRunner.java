@@ -0,0 +1,201 @@
+package frc.robot.sim;
+
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import frc.robot.RobotContainer;
+import frc.robot.subsystems.flywheel.Configs;
+import frc.robot.subsystems.flywheel.Flywheel;
+import frc.robot.utils.RollingHistogram;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Runs the full robot loop in simulation as fast as the CPU allows, for a fixed number of
+ * match-seconds. Simulated time is paused and stepped by exactly one loop period per loop, the
+ * robot is enabled in teleop, and a script of controller inputs is played back. At the end, loop
+ * times, flywheel spin-up and recovery times and state dwell times are printed and the process
+ * exits.
+ *
+ * <p>The script is read from the HEADLESS_SIM_SCRIPT environment variable as comma separated
+ * "seconds:action" events. Actions are "rb" (tap the right bumper, which toggles the flywheel) and
+ * "shot" (take speed off the simulated flywheel as if a ball was fired).
+ */
+public class HeadlessSimRunner {
+  private static final double LOOP_PERIOD_SECONDS = 0.02;
+  private static final String DEFAULT_SCRIPT =
+      "1:rb,5:shot,5.5:shot,6:shot,6.5:shot,8:rb,10:rb,13:shot,13.3:shot,15:rb";
+  private static final double BUTTON_HOLD_SECONDS = 0.1;
+  /** Speed a simulated shot takes off the wheel, in rotations per second. */
+  private static final double SHOT_VELOCITY_LOSS = 8.0;
+
+  private final RobotContainer container;
+  private final Flywheel flywheel;
+  private final XboxControllerSim controller = new XboxControllerSim(0);
+  private final double durationSeconds;
+  private final double[] eventTimes;
+  private final String[] eventActions;
+  private int nextEvent = 0;
+  private double releaseRightBumperTime = Double.NaN;
+
+  private final long[] loopNanos;
+  private int loopCount = 0;
+  private long lastLoopStart = 0;
+  private final long wallStart = System.nanoTime();
+  private double time = 0.0;
+
+  private double lastSetpoint = 0.0;
+  private double spinUpStart = Double.NaN;
+  private double shotTime = Double.NaN;
+  private final List<Double> spinUpTimes = new ArrayList<>();
+  private final List<Double> recoveryTimes = new ArrayList<>();
+  private final Map<String, Double> dwellSeconds = new LinkedHashMap<>();
+
+  /**
+   * Creates a runner. Simulated time must already be paused.
+   *
+   * @param container the robot's container.
+   * @param durationSeconds the number of match-seconds to run for.
+   */
+  public HeadlessSimRunner(RobotContainer container, double durationSeconds) {
+    this.container = container;
+    this.flywheel = container.flywheel;
+    this.durationSeconds = durationSeconds;
+    this.loopNanos = new long[(int) Math.ceil(durationSeconds / LOOP_PERIOD_SECONDS) + 1];
+
+    String script = System.getenv("HEADLESS_SIM_SCRIPT");
+    String[] events = (script == null || script.isBlank() ? DEFAULT_SCRIPT : script).split(",");
+    eventTimes = new double[events.length];
+    eventActions = new String[events.length];
+    for (int i = 0; i < events.length; i++) {
+      String[] parts = events[i].trim().split(":");
+      eventTimes[i] = Double.parseDouble(parts[0]);
+      eventActions[i] = parts[1];
+    }
+
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setAutonomous(false);
+    DriverStationSim.setTest(false);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+  }
+
+  /** Records metrics, plays the script and steps simulated time. Called at the end of each loop. */
+  public void periodic() {
+    long now = System.nanoTime();
+    if (lastLoopStart != 0 && loopCount < loopNanos.length) {
+      loopNanos[loopCount++] = now - lastLoopStart;
+    }
+    lastLoopStart = now;
+
+    recordFlywheel();
+    var state = container.getFlywheelStates().getActiveState();
+    if (state != null) {
+      dwellSeconds.merge(state.getName(), LOOP_PERIOD_SECONDS, Double::sum);
+    }
+
+    playScript();
+    DriverStationSim.notifyNewData();
+
+    time += LOOP_PERIOD_SECONDS;
+    if (time >= durationSeconds) {
+      report();
+      Logger.end();
+      System.exit(0);
+    }
+    SimHooks.stepTiming(LOOP_PERIOD_SECONDS);
+  }
+
+  private void recordFlywheel() {
+    double setpoint = flywheel.getVelocitySetpoint();
+    double velocity = flywheel.getVelocity();
+    double tolerance = Configs.atSpeedTolerance(setpoint);
+    boolean atSpeed = setpoint != 0.0 && Math.abs(velocity - setpoint) <= tolerance;
+
+    if (setpoint > lastSetpoint + tolerance) {
+      spinUpStart = time;
+    }
+    lastSetpoint = setpoint;
+
+    if (atSpeed && !Double.isNaN(spinUpStart)) {
+      spinUpTimes.add(time - spinUpStart);
+      spinUpStart = Double.NaN;
+    }
+    if (atSpeed && !Double.isNaN(shotTime)) {
+      recoveryTimes.add(time - shotTime);
+      shotTime = Double.NaN;
+    }
+  }
+
+  private void playScript() {
+    if (!Double.isNaN(releaseRightBumperTime) && time >= releaseRightBumperTime) {
+      controller.setRightBumperButton(false);
+      releaseRightBumperTime = Double.NaN;
+    }
+    while (nextEvent < eventTimes.length && eventTimes[nextEvent] <= time) {
+      switch (eventActions[nextEvent]) {
+        case "rb" -> {
+          controller.setRightBumperButton(true);
+          releaseRightBumperTime = time + BUTTON_HOLD_SECONDS;
+        }
+        case "shot" -> {
+          if (container.getFlywheelSim() != null) {
+            container.getFlywheelSim().shoot(SHOT_VELOCITY_LOSS);
+            shotTime = time;
+          }
+        }
+        default ->
+            throw new IllegalArgumentException(
+                "Unknown headless sim action " + eventActions[nextEvent]);
+      }
+      nextEvent++;
+    }
+  }
+
+  private void report() {
+    double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+    long[] sorted = Arrays.copyOf(loopNanos, loopCount);
+    Arrays.sort(sorted);
+
+    System.out.println("========== Headless simulation report ==========");
+    System.out.printf(
+        "Simulated %.1f s in %.2f s wall time (%.1fx real time), %d loops%n",
+        time, wallSeconds, time / wallSeconds, loopCount);
+    System.out.printf(
+        "Loop time: p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+        RollingHistogram.nearestRank(sorted, loopCount, 0.5) / 1e6,
+        RollingHistogram.nearestRank(sorted, loopCount, 0.99) / 1e6,
+        RollingHistogram.nearestRank(sorted, loopCount, 1) / 1e6);
+    printTimes("Spin-up time", spinUpTimes);
+    printTimes("Shot recovery time", recoveryTimes);
+    System.out.printf(
+        "Shots detected by the flywheel: %d, last recovery %.3f s%n",
+        flywheel.getShotRecovery().getShotCount(),
+        flywheel.getShotRecovery().getLastRecoveryTime());
+    System.out.println("State dwell times:");
+    dwellSeconds.forEach((name, seconds) -> System.out.printf("  %s: %.2f s%n", name, seconds));
+  }
+
+  private static void printTimes(String label, List<Double> times) {
+    if (times.isEmpty()) {
+      System.out.println(label + ": none");
+      return;
+    }
+    double total = 0.0;
+    double max = 0.0;
+    for (double t : times) {
+      total += t;
+      max = Math.max(max, t);
+    }
+    System.out.printf(
+        "%s: %d samples, mean %.3f s, max %.3f s%n",
+        label,
+        times.size(),
+        total / times.size(),
+        max);
+  }
+}
@@ -4,29 +4,191 @@ import com.revrobotics.spark.FeedbackSensor;
 import com.revrobotics.spark.config.EncoderConfig;
 import com.revrobotics.spark.config.SparkBaseConfig.IdleMode;
 import com.revrobotics.spark.config.SparkFlexConfig;
-import frc.robot.Constants;
 
 public class Configs {
+  // identified with SysID, in volts, volts per rotation per second, and volts per rotation per
+  // second squared
+  public static final double kS = 0.074548;
+  public static final double kV = 0.10976;
+  public static final double kA = 0.044959;
+
+  // Velocity estimator noise, see FlywheelVelocityEstimator
+
+  /** Standard deviation of an encoder position sample, in rotations. */
+  public static final double ESTIMATOR_POSITION_STD_DEV = 0.002;
+
+  /** Velocity model error, in rotations per second per root second. */
+  public static final double ESTIMATOR_VELOCITY_STD_DEV = 2.0;
+
+  /** How fast unmodeled acceleration changes, in rotations per second squared per root second. */
+  public static final double ESTIMATOR_DISTURBANCE_STD_DEV = 300.0;
+
+  // roboRIO-side LQR velocity controller, see FlywheelLQRController
+
+  /** Period of the LQR loop, in seconds. */
+  public static final double LQR_PERIOD = 0.005;
+
+  /** Velocity error the LQR tolerates, in rotations per second. Smaller is more aggressive. */
+  public static final double LQR_VELOCITY_TOLERANCE = 1.0;
+
+  /** Largest voltage the LQR outputs. */
+  public static final double LQR_MAX_VOLTAGE = 12.0;
+
+  /** LQR observer model error, in rotations per second. */
+  public static final double LQR_MODEL_STD_DEV = 3.0;
+
+  /** LQR observer measurement noise, in rotations per second. */
+  public static final double LQR_MEASUREMENT_STD_DEV = 0.05;
+
+  /** Delay from reading the velocity to the voltage taking effect, in seconds. */
+  public static final double LQR_LATENCY = 0.01;
+
+  /** Onboard velocity loop proportional gain, per rotation per second of error. */
+  public static final double kP = 0.0090597;
+
+  /** MAXMotion acceleration limit, in rotations per second squared. */
+  public static final double MAX_ACCELERATION = 300;
+
+  /** Velocity the flywheel idles at between shots, in rotations per second. */
+  public static final double IDLE_VELOCITY = 400 / 60.0;
+
+  /**
+   * Longest time an unchanged setpoint goes without being sent to the leader again, in seconds.
+   * Unchanged setpoints are otherwise suppressed to save CAN bandwidth.
+   */
+  public static final double OUTPUT_KEEP_ALIVE = 0.1;
+
+  /** Smart current limit of each motor, in amps. */
+  public static final int CURRENT_LIMIT = 90;
+
+  /** The wheel is at speed within this fraction of the setpoint, or 1 rotation per second. */
+  private static final double AT_SPEED_TOLERANCE = 0.02;
+
+  /**
+   * @param setpoint the velocity setpoint, in rotations per second.
+   * @return how far from the setpoint the wheel counts as at speed, in rotations per second.
+   */
+  public static double atSpeedTolerance(double setpoint) {
+    return Math.max(1.0, Math.abs(setpoint) * AT_SPEED_TOLERANCE);
+  }
+
+  // Shot detection and recovery boost, see ShotRecovery
+
+  /** Smallest velocity drop counted as a shot, in rotations per second. */
+  public static final double SHOT_MIN_VELOCITY_DROP = 2.0;
+
+  /** Smallest velocity drop counted as a shot, as a fraction of the setpoint. */
+  public static final double SHOT_VELOCITY_DROP_FRACTION = 0.03;
+
+  /** Smallest rise in total current over the settled current counted as a shot, in amps. */
+  public static final double SHOT_MIN_CURRENT_RISE = 10.0;
+
+  /** Recovery boost, in volts per rotation per second of velocity error. */
+  public static final double SHOT_BOOST_GAIN = 0.5;
+
+  /** Largest recovery boost, in volts. */
+  public static final double SHOT_MAX_BOOST = 6.0;
+
+  /** Longest a recovery boost is applied for, in seconds. */
+  public static final double SHOT_BOOST_WINDOW = 0.15;
+
+  /**
+   * Named status frame rate profiles. The flywheel's states request one, and the IO switches the
+   * controllers' frame rates in the background when it changes. IDLE is always used when disabled.
+   */
+  public enum SignalProfile {
+    /**
+     * Encoder frames every 5 ms, which is the default sampling rate and the LQR period, and fast
+     * current frames, for closed loop control and shot detection. Faster encoder frames would load
+     * the bus more than the default 20 ms frames for little gain at the main loop's rate.
+     */
+    RUNNING(5, 20, 20),
+    /**
+     * Slow frames while idling or disabled, to save CAN bandwidth. The sampler drops the repeated
+     * encoder readings in between frames.
+     */
+    IDLE(20, 100, 200);
+
+    /**
+     * Period of the leader's encoder frames, in milliseconds. A sampler faster than this drops the
+     * repeated readings in between frames.
+     */
+    public final int encoderPeriodMs;
+    /** Period of both motors' current frames, in milliseconds. */
+    public final int currentPeriodMs;
+    /** Period of the leader's voltage, temperature and fault frames, in milliseconds. */
+    public final int telemetryPeriodMs;
+
+    SignalProfile(int encoderPeriodMs, int currentPeriodMs, int telemetryPeriodMs) {
+      this.encoderPeriodMs = encoderPeriodMs;
+      this.currentPeriodMs = currentPeriodMs;
+      this.telemetryPeriodMs = telemetryPeriodMs;
+    }
+  }
+
+  /** The leader keeps its applied output period at this in every profile, as followers use it. */
+  private static final int APPLIED_OUTPUT_PERIOD_MS = 10;
+
+  /** Period of the follower's frames other than current, which nothing needs quickly. */
+  private static final int FOLLOWER_SLOW_PERIOD_MS = 500;
+
   public static SparkFlexConfig leaderConfig = new SparkFlexConfig();
+  /** The IO sets the leader to follow, from the leader's CAN ID. */
   public static SparkFlexConfig followerConfig = new SparkFlexConfig();
 
   static {
     leaderConfig
         .idleMode(IdleMode.kCoast)
-        .smartCurrentLimit(90, 90)
+        .smartCurrentLimit(CURRENT_LIMIT, CURRENT_LIMIT)
         .apply(new EncoderConfig().velocityConversionFactor(1 / 60.0));
-    leaderConfig.closedLoop.feedForward.sva(0.074548, 0.10976, 0.044959);
+    leaderConfig.closedLoop.feedForward.sva(kS, kV, kA);
     leaderConfig
         .closedLoop
-        .p(0.0090597)
+        .p(kP)
         .outputRange(-1, 1)
         .feedbackSensor(FeedbackSensor.kPrimaryEncoder)
         .maxMotion
-        .maxAcceleration(300);
+        .maxAcceleration(MAX_ACCELERATION);
 
     followerConfig
         .idleMode(IdleMode.kCoast)
-        .smartCurrentLimit(90, 90)
-        .follow(Constants.IDs.SHOOTER_LEADER, true);
+        .smartCurrentLimit(CURRENT_LIMIT, CURRENT_LIMIT);
+  }
+
+  /**
+   * @param profile the profile.
+   * @return the leader's status frame settings for the profile.
+   */
+  public static SparkFlexConfig leaderSignals(SignalProfile profile) {
+    var config = new SparkFlexConfig();
+    config
+        .signals
+        .primaryEncoderVelocityPeriodMs(profile.encoderPeriodMs)
+        .primaryEncoderPositionPeriodMs(profile.encoderPeriodMs)
+        .appliedOutputPeriodMs(APPLIED_OUTPUT_PERIOD_MS)
+        .outputCurrentPeriodMs(profile.currentPeriodMs)
+        .busVoltagePeriodMs(profile.telemetryPeriodMs)
+        .motorTemperaturePeriodMs(profile.telemetryPeriodMs)
+        .faultsPeriodMs(profile.telemetryPeriodMs);
+    return config;
+  }
+
+  /**
+   * @param profile the profile.
+   * @return the follower's status frame settings for the profile. Only its current is fast, for
+   *     shot detection; everything else is slowed down.
+   */
+  public static SparkFlexConfig followerSignals(SignalProfile profile) {
+    var config = new SparkFlexConfig();
+    config
+        .signals
+        .primaryEncoderVelocityPeriodMs(FOLLOWER_SLOW_PERIOD_MS)
+        .primaryEncoderPositionPeriodMs(FOLLOWER_SLOW_PERIOD_MS)
+        .appliedOutputPeriodMs(FOLLOWER_SLOW_PERIOD_MS)
+        .outputCurrentPeriodMs(profile.currentPeriodMs)
+        .busVoltagePeriodMs(FOLLOWER_SLOW_PERIOD_MS)
+        .motorTemperaturePeriodMs(FOLLOWER_SLOW_PERIOD_MS)
+        .faultsPeriodMs(FOLLOWER_SLOW_PERIOD_MS);
+    return config;
   }
 }
@@ -2,6 +2,7 @@ package frc.robot.subsystems.flywheel;
 
 import static edu.wpi.first.units.Units.Minute;
 import static edu.wpi.first.units.Units.Rotations;
+import static edu.wpi.first.units.Units.RotationsPerSecond;
 import static edu.wpi.first.units.Units.Volts;
 
 import edu.wpi.first.math.controller.ProfiledPIDController;
@@ -10,18 +11,61 @@ import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.math.trajectory.TrapezoidProfile.Constraints;
 import edu.wpi.first.units.measure.AngularVelocity;
 import edu.wpi.first.units.measure.Voltage;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.robot.subsystems.flywheel.Configs.SignalProfile;
+import frc.robot.utils.Diagnostics;
+import frc.robot.utils.InterpolatingTable;
 import frc.robot.utils.LoggedTunableNumber;
+import java.util.function.DoubleSupplier;
 import lombok.Getter;
+import lombok.Setter;
+import org.littletonrobotics.junction.Logger;
 
 public class Flywheel extends SubsystemBase {
+  /** Where {@link #getVelocity()} and the controllers that use it get the velocity from. */
+  public enum VelocitySource {
+    /** The SparkFlex's velocity measurement. Filtered onboard, so it lags. */
+    SPARK,
+    /** {@link FlywheelVelocityEstimator}, from the encoder position samples and applied voltage. */
+    ESTIMATOR
+  }
+
+  private static final Diagnostics.Channel setVoltageLog =
+      Diagnostics.channel("Flywheel Set Voltage");
+
   private final FlywheelIO io;
   private final FlywheelIOInputsAutoLogged inputs;
 
   @Getter private final FlywheelSysIDFactory sysIDFactory;
 
+  /** The last velocity setpoint, in rotations per second, or 0 when running open loop. */
+  @Getter private double velocitySetpoint = 0.0;
+
+  /** Shot detection, and the feedforward boost applied while recovering from a shot. */
+  @Getter private final ShotRecovery shotRecovery = new ShotRecovery();
+
+  private final FlywheelVelocityEstimator velocityEstimator = new FlywheelVelocityEstimator();
+
+  private final SpinUpPredictor spinUpPredictor = new SpinUpPredictor();
+
+  /**
+   * Predicted time until the wheel is at its setpoint, in seconds, updated once per loop. 0 when at
+   * speed, and {@link Double#POSITIVE_INFINITY} when not in velocity control or out of reach.
+   */
+  @Getter private double timeToReady = Double.POSITIVE_INFINITY;
+
+  @Getter @Setter private VelocitySource velocitySource = VelocitySource.SPARK;
+
+  private final FlywheelLQRController lqrController;
+
+  /** The status frame profile requested by the current state. IDLE is used when disabled. */
+  private SignalProfile requestedSignalProfile = SignalProfile.IDLE;
+
   LoggedTunableNumber desiredMotorVelocity = new LoggedTunableNumber("Motor Velocity RPM");
 
   public Flywheel(FlywheelIO io) {
@@ -29,34 +73,127 @@ public class Flywheel extends SubsystemBase {
     this.inputs = new FlywheelIOInputsAutoLogged();
 
     this.sysIDFactory = new FlywheelSysIDFactory(this);
+    this.lqrController = new FlywheelLQRController(io);
 
     desiredMotorVelocity.initDefault(0);
   }
 
   public void setVoltage(Voltage volts) {
-    System.out.println("Flywheel Set Voltage " + volts.in(Volts));
+    setVoltageLog.log(volts.in(Volts));
+    velocitySetpoint = 0.0;
     io.setMotorVoltage(volts);
   }
 
   public void setVelocitySetpoint(AngularVelocity velocity) {
-    io.setVelocitySetpoint(velocity);
+    setVelocitySetpoint(velocity.in(RotationsPerSecond));
+  }
+
+  /**
+   * @param rotationsPerSecond the velocity setpoint.
+   */
+  public void setVelocitySetpoint(double rotationsPerSecond) {
+    velocitySetpoint = rotationsPerSecond;
+    io.setVelocitySetpoint(velocitySetpoint, shotRecovery.getBoostVolts());
+  }
+
+  /**
+   * Requests a status frame profile, for use with {@link frc.robot.utils.State2#onEnter}. The
+   * command has no requirements, so it does not interrupt the flywheel's other commands, and also
+   * runs while disabled.
+   *
+   * @param profile the profile.
+   * @return the command.
+   */
+  public InstantCommand requestSignalProfile(SignalProfile profile) {
+    return new InstantCommand(() -> requestedSignalProfile = profile) {
+      @Override
+      public boolean runsWhenDisabled() {
+        return true;
+      }
+    };
   }
 
   @Override
   public void periodic() {
+    SignalProfile signalProfile =
+        DriverStation.isDisabled() ? SignalProfile.IDLE : requestedSignalProfile;
+    io.setSignalProfile(signalProfile);
+    Logger.recordOutput("Flywheel/SignalProfile", signalProfile);
+
     io.updateInputs(inputs);
+    Logger.processInputs("Flywheel", inputs);
+    Logger.recordOutput("Flywheel/VelocitySetpoint", velocitySetpoint);
+
+    velocityEstimator.update(
+        inputs.sampleTimestamps,
+        inputs.samplePositions,
+        inputs.sampleCount,
+        getVolts(),
+        inputs.motors.leaderVelocity,
+        Logger.getTimestamp() / 1e6);
+    Logger.recordOutput("Flywheel/Estimator/Velocity", velocityEstimator.getEstimatedVelocity());
+    Logger.recordOutput(
+        "Flywheel/Estimator/Acceleration", velocityEstimator.getEstimatedAcceleration());
+    Logger.recordOutput(
+        "Flywheel/Estimator/Disturbance", velocityEstimator.getEstimatedDisturbance());
+    Logger.recordOutput("Flywheel/VelocitySource", velocitySource);
+
+    // the logged timestamp, so replay detects the same shots
+    shotRecovery.update(
+        Logger.getTimestamp() / 1e6,
+        velocitySetpoint,
+        getVelocity(),
+        inputs.motors.leaderCurrent + inputs.motors.followerCurrent);
+    Logger.recordOutput("Flywheel/Shots/Count", shotRecovery.getShotCount());
+    Logger.recordOutput("Flywheel/Shots/RecoveryTime", shotRecovery.getLastRecoveryTime());
+    Logger.recordOutput("Flywheel/Shots/Recovering", shotRecovery.isRecovering());
+    Logger.recordOutput("Flywheel/Shots/BoostVolts", shotRecovery.getBoostVolts());
+
+    double batteryVoltage =
+        inputs.motors.leaderBusVoltage > 0.0
+            ? inputs.motors.leaderBusVoltage
+            : RobotController.getBatteryVoltage();
+    timeToReady =
+        velocitySetpoint == 0.0
+            ? Double.POSITIVE_INFINITY
+            : spinUpPredictor.timeToReady(getVelocity(), velocitySetpoint, batteryVoltage);
+    Logger.recordOutput("Flywheel/TimeToReady", timeToReady);
   }
 
   public double getVolts() {
-    return io.get() * RobotController.getBatteryVoltage();
+    return inputs.motors.leaderAppliedOutput * inputs.motors.leaderBusVoltage;
   }
 
+  /**
+   * @return the velocity from the selected {@link VelocitySource}, in rotations per second.
+   */
   public double getVelocity() {
-    return io.getVelocity();
+    return velocitySource == VelocitySource.ESTIMATOR
+        ? velocityEstimator.getEstimatedVelocity()
+        : inputs.motors.leaderVelocity;
+  }
+
+  /**
+   * @return the estimated acceleration, in rotations per second squared.
+   */
+  public double getAcceleration() {
+    return velocityEstimator.getEstimatedAcceleration();
   }
 
   public double getPosition() {
-    return io.getPosition();
+    return inputs.motors.leaderPosition;
+  }
+
+  /**
+   * A trigger that is true once the wheel is predicted to be at its setpoint within some time, e.g.
+   * to start feeding a ball so that it reaches the wheel just as the wheel reaches speed. Usable as
+   * a {@link frc.robot.utils.State2#withEndCondition} end condition.
+   *
+   * @param seconds the lead time, in seconds.
+   * @return the trigger.
+   */
+  public Trigger readyWithin(double seconds) {
+    return new Trigger(() -> timeToReady <= seconds);
   }
 
   public Command runVelocity() {
@@ -79,13 +216,59 @@ public class Flywheel extends SubsystemBase {
         });
   }
 
+  /** Spins at {@link Configs#IDLE_VELOCITY}, ready to speed up for a shot. */
+  public Command idle() {
+    return runVelocity(RotationsPerSecond.of(Configs.IDLE_VELOCITY));
+  }
+
+  /**
+   * Follows the setpoint for a changing distance. While the distance is NaN, such as when the
+   * target is not in view, the last valid setpoint is held, starting with {@link
+   * Configs#IDLE_VELOCITY}.
+   *
+   * @param distanceMeters the distance to the target.
+   * @param setpointMap setpoints by distance in meters, with an "rpm" column.
+   * @return the command.
+   */
+  public Command followDistance(DoubleSupplier distanceMeters, InterpolatingTable setpointMap) {
+    int rpmColumn = setpointMap.getColumn("rpm");
+    double[] heldSetpoint = {Configs.IDLE_VELOCITY};
+    return this.runEnd(
+        () -> {
+          double setpoint = setpointMap.get(distanceMeters.getAsDouble(), rpmColumn) / 60;
+          if (Double.isFinite(setpoint)) {
+            heldSetpoint[0] = setpoint;
+          }
+          setVelocitySetpoint(heldSetpoint[0]);
+        },
+        () -> {
+          setVoltage(Volts.zero());
+        });
+  }
+
+  /**
+   * Runs the velocity from the dashboard with {@link FlywheelLQRController} instead of the
+   * SparkFlex's onboard velocity loop.
+   */
+  public Command runVelocityLQR() {
+    return this.runEnd(
+        () -> {
+          velocitySetpoint = desiredMotorVelocity.get() / 60;
+          lqrController.enable(velocitySetpoint);
+        },
+        () -> {
+          lqrController.disable();
+          setVoltage(Volts.zero());
+        });
+  }
+
   public Command runVelocityWPI() {
     return new VelocityWPI();
   }
 
   public class VelocityWPI extends Command {
     private final SimpleMotorFeedforward feedforward =
-        new SimpleMotorFeedforward(0.074548, 0.10976, 0.044959);
+        new SimpleMotorFeedforward(Configs.kS, Configs.kV, Configs.kA);
     private final ProfiledPIDController controller =
         new ProfiledPIDController(
             0.43619, 0, 0, new Constraints(300, 600) // acceleration, jerk
@@ -1,23 +1,67 @@
 package frc.robot.subsystems.flywheel;
 
+import static edu.wpi.first.units.Units.RotationsPerSecond;
+
 import edu.wpi.first.units.measure.AngularVelocity;
-import edu.wpi.first.units.measure.MutAngularVelocity;
-import edu.wpi.first.units.measure.MutCurrent;
-import edu.wpi.first.units.measure.MutTemperature;
 import edu.wpi.first.units.measure.Voltage;
+import frc.robot.subsystems.flywheel.Configs.SignalProfile;
 import org.littletonrobotics.junction.AutoLog;
 
 public interface FlywheelIO {
   @AutoLog
   public static class FlywheelIOInputs {
-    public MutAngularVelocity motorVelocity;
-    public MutCurrent motorCurrent;
-    public MutTemperature motorTemperature;
+    /** Telemetry for both motors. Filled in place; logged as one struct record. */
+    public FlywheelMotorData motors = new FlywheelMotorData();
+
+    /**
+     * Number of encoder samples taken since the last loop. Only that many leading entries of the
+     * sample arrays are valid; the arrays are sized once and refilled in place every loop.
+     */
+    public int sampleCount = 0;
+    /** Timestamps, in seconds, of the encoder samples, oldest first. */
+    public double[] sampleTimestamps = new double[0];
+    /** Positions, in rotations, of the encoder samples. */
+    public double[] samplePositions = new double[0];
+    /** Velocities, in rotations per second, of the encoder samples. */
+    public double[] sampleVelocities = new double[0];
+
+    /** Whether there are configuration changes still waiting to be applied. */
+    public boolean configPending = false;
+    /** Whether the last configuration changes were read back successfully. */
+    public boolean configVerified = true;
+
+    /** Number of setpoint frames sent to the leader. */
+    public long outputFramesSent = 0;
+    /** Number of setpoint frames not sent because they repeated the last one. */
+    public long outputFramesSuppressed = 0;
   }
 
   public default void setMotorVoltage(Voltage volts) {}
 
-  public default void setVelocitySetpoint(AngularVelocity angularVelocity) {}
+  /**
+   * Sets the motor voltage from a controller running on its own thread, such as {@link
+   * FlywheelLQRController}. Must be thread safe. The next output set from the main loop is always
+   * sent, whether or not it changed.
+   */
+  public default void setControlThreadVoltage(double volts) {}
+
+  public default void setVelocitySetpoint(AngularVelocity angularVelocity) {
+    setVelocitySetpoint(angularVelocity.in(RotationsPerSecond), 0.0);
+  }
+
+  /**
+   * Runs the onboard velocity loop.
+   *
+   * @param rotationsPerSecond the setpoint.
+   * @param arbFeedforwardVolts extra voltage added to the onboard loop's output.
+   */
+  public default void setVelocitySetpoint(double rotationsPerSecond, double arbFeedforwardVolts) {}
+
+  /**
+   * Switches the controllers' status frame rates. Called every loop; only a change of profile is
+   * applied, in the background.
+   */
+  public default void setSignalProfile(SignalProfile profile) {}
 
   public default void updateInputs(FlywheelIOInputs inputs) {}
 
@@ -25,6 +69,9 @@ public interface FlywheelIO {
     return 0.0;
   }
 
+  /**
+   * @return the latest measured velocity, in rotations per second. Must be thread safe.
+   */
   public default double getVelocity() {
     return 0.0;
   }
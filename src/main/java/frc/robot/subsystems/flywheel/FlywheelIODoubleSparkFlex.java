@@ -1,94 +1,270 @@
 package frc.robot.subsystems.flywheel;
 
-import static edu.wpi.first.units.Units.Minute;
-import static edu.wpi.first.units.Units.Rotations;
-import static edu.wpi.first.units.Units.RotationsPerSecond;
 import static edu.wpi.first.units.Units.Volts;
 
-import com.revrobotics.PersistMode;
-import com.revrobotics.ResetMode;
+import com.revrobotics.RelativeEncoder;
 import com.revrobotics.spark.ClosedLoopSlot;
 import com.revrobotics.spark.SparkBase.ControlType;
+import com.revrobotics.spark.SparkClosedLoopController.ArbFFUnits;
 import com.revrobotics.spark.SparkFlex;
 import com.revrobotics.spark.SparkLowLevel.MotorType;
-import edu.wpi.first.units.measure.AngularVelocity;
+import com.revrobotics.spark.config.SparkBaseConfig.IdleMode;
+import com.revrobotics.spark.config.SparkFlexConfig;
 import edu.wpi.first.units.measure.Voltage;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.robot.subsystems.flywheel.Configs.SignalProfile;
+import frc.robot.utils.Diagnostics;
 import frc.robot.utils.LoggedTunableNumber;
+import frc.robot.utils.OutputCache;
+import frc.robot.utils.SparkConfigApplier;
+import frc.robot.utils.StartupConfigurator;
+import java.util.concurrent.Future;
 
 public class FlywheelIODoubleSparkFlex implements FlywheelIO {
+  /** Samples each RUNNING encoder frame once. */
+  public static final double DEFAULT_SAMPLING_RATE_HZ = 200;
+
+  private static final Diagnostics.Channel setVoltageLog = Diagnostics.channel("IO Set Voltage");
+  private static final Diagnostics.Channel setVelocityLog = Diagnostics.channel("Set Velocity");
+
+  /** Faults are read every this many loops, matching the slowest telemetry frame period. */
+  private static final int FAULT_READ_PERIOD_LOOPS = 10;
+
   private final SparkFlex leader;
   private final SparkFlex follower;
+  private final RelativeEncoder followerEncoder;
+  private final SparkFlexSampler sampler;
+  private final SparkConfigApplier leaderConfigApplier;
+  private final SparkConfigApplier followerConfigApplier;
+  private final Future<?> leaderStartup;
+  private boolean samplerStarted = false;
+  private SignalProfile signalProfile = SignalProfile.IDLE;
+  private final OutputCache outputCache = new OutputCache(Configs.OUTPUT_KEEP_ALIVE);
+  private boolean wasEnabled = false;
+  private boolean wasConfigPending = false;
+  private volatile boolean controlThreadOutput = false;
+
+  private final double[] sampleTimestamps;
+  private final double[] samplePositions;
+  private final double[] sampleVelocities;
+  private int faultReadCountdown = 0;
+  private double latestVelocity = 0.0;
+  private double latestPosition = 0.0;
 
   public FlywheelIODoubleSparkFlex(int leaderID, int followerID) {
+    this(leaderID, followerID, DEFAULT_SAMPLING_RATE_HZ);
+  }
+
+  /**
+   * @param leaderID CAN ID of the leader
+   * @param followerID CAN ID of the follower
+   * @param samplingRateHz rate at which the leader's encoder is sampled, between {@link
+   *     SparkFlexSampler#MIN_RATE_HZ} and {@link SparkFlexSampler#MAX_RATE_HZ}
+   */
+  public FlywheelIODoubleSparkFlex(int leaderID, int followerID, double samplingRateHz) {
     leader = new SparkFlex(leaderID, MotorType.kBrushless);
     follower = new SparkFlex(followerID, MotorType.kBrushless);
+    followerEncoder = follower.getEncoder();
 
-    leader.configure(
-        Configs.leaderConfig, ResetMode.kResetSafeParameters, PersistMode.kNoPersistParameters);
-    follower.configure(
-        Configs.followerConfig, ResetMode.kResetSafeParameters, PersistMode.kNoPersistParameters);
+    // start out idle, since the robot boots disabled
+    Configs.leaderConfig.apply(Configs.leaderSignals(signalProfile));
+    Configs.followerConfig.apply(Configs.followerSignals(signalProfile));
+    Configs.followerConfig.follow(leaderID, true);
 
+    // configured concurrently with the robot's other devices; Robot waits for them all
+    leaderStartup =
+        StartupConfigurator.submit(
+            "Flywheel Leader",
+            leader,
+            Configs.leaderConfig,
+            () ->
+                SparkConfigApplier.matches(leader.configAccessor.closedLoop.getP(), Configs.kP)
+                    && leader.configAccessor.getSmartCurrentLimit() == Configs.CURRENT_LIMIT
+                    && leader.configAccessor.getIdleMode() == IdleMode.kCoast);
+    Future<?> followerStartup =
+        StartupConfigurator.submit(
+            "Flywheel Follower",
+            follower,
+            Configs.followerConfig,
+            () ->
+                follower.configAccessor.getFollowerModeLeaderId() == leaderID
+                    && follower.configAccessor.getFollowerModeInverted()
+                    && follower.configAccessor.getSmartCurrentLimit() == Configs.CURRENT_LIMIT);
+
+    // defaults are the values in Configs.leaderConfig, since the devices may not be configured
+    // yet. Anything it does not set is reset to its default of 0 by kResetSafeParameters.
     LoggedTunableNumber kP = new LoggedTunableNumber("Flywheel kP");
-    kP.initDefault(leader.configAccessor.closedLoop.getP());
+    kP.initDefault(Configs.kP);
     LoggedTunableNumber kI = new LoggedTunableNumber("Flywheel kI");
-    kI.initDefault(leader.configAccessor.closedLoop.getI());
+    kI.initDefault(0);
     LoggedTunableNumber kD = new LoggedTunableNumber("Flywheel kD");
-    kD.initDefault(leader.configAccessor.closedLoop.getD());
+    kD.initDefault(0);
 
     LoggedTunableNumber maxVelocity = new LoggedTunableNumber("Flywheel Cruise Velocity");
+    maxVelocity.initDefault(0);
     LoggedTunableNumber maxAcceleration = new LoggedTunableNumber("Flywheel Max Acceleration");
+    maxAcceleration.initDefault(Configs.MAX_ACCELERATION);
+
+    leaderConfigApplier = new SparkConfigApplier(leader, "FlywheelConfigApplier", leaderStartup);
+    followerConfigApplier =
+        new SparkConfigApplier(follower, "FlywheelFollowerConfigApplier", followerStartup);
 
-    LoggedTunableNumber.ifChanged(
-        this.hashCode(),
+    LoggedTunableNumber.onChange(
         pid -> {
-          Configs.leaderConfig.closedLoop.pid(pid[0], pid[1], pid[2]);
-          leader.configure(
-              Configs.leaderConfig,
-              ResetMode.kResetSafeParameters,
-              PersistMode.kNoPersistParameters);
+          double p = pid[0];
+          double i = pid[1];
+          double d = pid[2];
+          var change = new SparkFlexConfig();
+          change.closedLoop.pid(p, i, d);
+          leaderConfigApplier.submit(
+              "PID",
+              change,
+              () ->
+                  SparkConfigApplier.matches(leader.configAccessor.closedLoop.getP(), p)
+                      && SparkConfigApplier.matches(leader.configAccessor.closedLoop.getI(), i)
+                      && SparkConfigApplier.matches(leader.configAccessor.closedLoop.getD(), d));
         },
         kP,
         kI,
         kD);
 
-    LoggedTunableNumber.ifChanged(
-        this.hashCode(),
+    LoggedTunableNumber.onChange(
         va -> {
-          Configs.leaderConfig.closedLoop.maxMotion.cruiseVelocity(va[0]);
-          Configs.leaderConfig.closedLoop.maxMotion.maxAcceleration(va[1]);
-          leader.configure(
-              Configs.leaderConfig,
-              ResetMode.kResetSafeParameters,
-              PersistMode.kNoPersistParameters);
+          double cruiseVelocity = va[0];
+          double acceleration = va[1];
+          var change = new SparkFlexConfig();
+          change.closedLoop.maxMotion.cruiseVelocity(cruiseVelocity).maxAcceleration(acceleration);
+          leaderConfigApplier.submit(
+              "MAXMotion",
+              change,
+              () ->
+                  SparkConfigApplier.matches(
+                          leader.configAccessor.closedLoop.maxMotion.getCruiseVelocity(),
+                          cruiseVelocity)
+                      && SparkConfigApplier.matches(
+                          leader.configAccessor.closedLoop.maxMotion.getMaxAcceleration(),
+                          acceleration));
         },
         maxVelocity,
         maxAcceleration);
+
+    // started by updateInputs once the leader's startup configuration is done
+    sampler = new SparkFlexSampler(leader, samplingRateHz, "FlywheelSampler");
+    sampleTimestamps = new double[sampler.getBuffer().capacity()];
+    samplePositions = new double[sampler.getBuffer().capacity()];
+    sampleVelocities = new double[sampler.getBuffer().capacity()];
   }
 
   @Override
   public void setMotorVoltage(Voltage volts) {
-    System.out.println("IO Set Voltage " + volts.in(Volts));
-    leader.setVoltage(volts);
+    double voltage = volts.in(Volts);
+    setVoltageLog.log(voltage);
+    if (shouldSend(ControlType.kVoltage, voltage, 0.0)) {
+      leader.setVoltage(voltage);
+    }
   }
 
   @Override
-  public void setVelocitySetpoint(AngularVelocity velocity) {
-    System.out.println("Set Velocity " + velocity.in(Rotations.per(Minute)));
+  public void setVelocitySetpoint(double rotationsPerSecond, double arbFeedforwardVolts) {
+    setVelocityLog.log(rotationsPerSecond * 60);
+    if (!shouldSend(ControlType.kVelocity, rotationsPerSecond, arbFeedforwardVolts)) {
+      return;
+    }
     leader
         .getClosedLoopController()
-        .setSetpoint(velocity.in(RotationsPerSecond), ControlType.kVelocity, ClosedLoopSlot.kSlot0);
+        .setSetpoint(
+            rotationsPerSecond,
+            ControlType.kVelocity,
+            ClosedLoopSlot.kSlot0,
+            arbFeedforwardVolts,
+            ArbFFUnits.kVoltage);
+  }
+
+  @Override
+  public void setControlThreadVoltage(double volts) {
+    controlThreadOutput = true;
+    leader.setVoltage(volts);
+  }
+
+  private boolean shouldSend(ControlType controlType, double setpoint, double arbFeedforward) {
+    if (controlThreadOutput) {
+      // the leader's output was set behind the cache's back
+      controlThreadOutput = false;
+      outputCache.invalidate();
+    }
+    return outputCache.shouldSend(controlType, 0, setpoint, arbFeedforward);
+  }
+
+  @Override
+  public void setSignalProfile(SignalProfile profile) {
+    if (profile == signalProfile) {
+      return;
+    }
+    signalProfile = profile;
+    leaderConfigApplier.submit(
+        "Signals",
+        Configs.leaderSignals(profile),
+        () -> leader.configAccessor.signals.getOutputCurrentPeriodMs() == profile.currentPeriodMs);
+    followerConfigApplier.submit(
+        "Signals",
+        Configs.followerSignals(profile),
+        () ->
+            follower.configAccessor.signals.getOutputCurrentPeriodMs() == profile.currentPeriodMs);
   }
 
   @Override
   public void updateInputs(FlywheelIOInputs inputs) {
-    /**
-     * inputs.motorVelocity.mut_replace(leader.getEncoder().getVelocity(), Rotations.per(Minute));
-     * inputs.motorCurrent.mut_replace(leader.getOutputCurrent(), Amps);
-     * inputs.motorTemperature.mut_replace(leader.getMotorTemperature(), Celsius);
-     */
-    SmartDashboard.putNumber("Motor Velocity", getVelocity() * 60);
-    SmartDashboard.putNumber("Motor Current", leader.getOutputCurrent());
+    if (!samplerStarted && leaderStartup.isDone()) {
+      sampler.start();
+      samplerStarted = true;
+    }
+    int count = sampler.getBuffer().drain(sampleTimestamps, samplePositions, sampleVelocities);
+    if (count > 0) {
+      latestPosition = samplePositions[count - 1];
+      latestVelocity = sampleVelocities[count - 1];
+    }
+    // the same arrays every loop; the logger copies them when they are recorded
+    inputs.sampleCount = count;
+    inputs.sampleTimestamps = sampleTimestamps;
+    inputs.samplePositions = samplePositions;
+    inputs.sampleVelocities = sampleVelocities;
+    inputs.configPending = leaderConfigApplier.isPending() || followerConfigApplier.isPending();
+    inputs.configVerified = leaderConfigApplier.isVerified() && followerConfigApplier.isVerified();
+
+    // resend the setpoint after the leader may have dropped it: on enable and after reconfiguring
+    boolean enabled = DriverStation.isEnabled();
+    if ((enabled && !wasEnabled) || (wasConfigPending && !inputs.configPending)) {
+      outputCache.invalidate();
+    }
+    wasEnabled = enabled;
+    wasConfigPending = inputs.configPending;
+    inputs.outputFramesSent = outputCache.getSentCount();
+    inputs.outputFramesSuppressed = outputCache.getSuppressedCount();
+
+    FlywheelMotorData motors = inputs.motors;
+    motors.leaderVelocity = latestVelocity;
+    motors.leaderPosition = latestPosition;
+    motors.leaderAppliedOutput = leader.getAppliedOutput();
+    motors.leaderBusVoltage = leader.getBusVoltage();
+    motors.leaderCurrent = leader.getOutputCurrent();
+    motors.leaderTemperature = leader.getMotorTemperature();
+
+    // getFaults() allocates, and faults rarely change, so keep the last reading between reads
+    boolean readFaults = --faultReadCountdown <= 0;
+    if (readFaults) {
+      faultReadCountdown = FAULT_READ_PERIOD_LOOPS;
+      motors.leaderFaults = leader.getFaults().rawBits;
+    }
+
+    motors.followerVelocity = followerEncoder.getVelocity();
+    motors.followerPosition = followerEncoder.getPosition();
+    motors.followerAppliedOutput = follower.getAppliedOutput();
+    motors.followerBusVoltage = follower.getBusVoltage();
+    motors.followerCurrent = follower.getOutputCurrent();
+    motors.followerTemperature = follower.getMotorTemperature();
+    if (readFaults) {
+      motors.followerFaults = follower.getFaults().rawBits;
+    }
   }
 
   @Override
@@ -98,11 +274,11 @@ public class FlywheelIODoubleSparkFlex implements FlywheelIO {
 
   @Override
   public double getVelocity() {
-    return leader.getEncoder().getVelocity();
+    return sampler.getLatestVelocity();
   }
 
   @Override
   public double getPosition() {
-    return leader.getEncoder().getPosition();
+    return latestPosition;
   }
 }
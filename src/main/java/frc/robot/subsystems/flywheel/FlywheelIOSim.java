@@ -0,0 +1,223 @@
+package frc.robot.subsystems.flywheel;
+
+import static edu.wpi.first.units.Units.Volts;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.units.measure.Voltage;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.utils.OutputCache;
+
+/**
+ * Physics simulation of the flywheel. Both SparkFlexes and the wheel's inertia are modeled by the
+ * identified feedforward in {@link Configs} (dv/dt = (V - kS sgn(v) - kV v) / kA), and the motor
+ * current, smart current limit and the onboard velocity loop are emulated on top of it. Each robot
+ * loop is integrated in fixed sub-steps, 1 kHz by default, which is also the rate the emulated
+ * onboard controller runs at.
+ *
+ * <p>The onboard loop is emulated as feedforward, plus any arbitrary feedforward, plus {@link
+ * Configs#kP} times the velocity error, with the proportional output treated as duty cycle. When
+ * MAXMotion is enabled, the setpoint the loop tracks is ramped at {@link Configs#MAX_ACCELERATION}.
+ */
+public class FlywheelIOSim implements FlywheelIO {
+  public static final double DEFAULT_SUBSTEP_RATE_HZ = 1000;
+  private static final double LOOP_PERIOD_SECONDS = 0.02;
+  private static final double TEMPERATURE_CELSIUS = 25.0;
+
+  private enum ControlMode {
+    VOLTAGE,
+    VELOCITY
+  }
+
+  private final DCMotor motor = DCMotor.getNeoVortex(1);
+  private final int substeps;
+  private final double dt;
+  private final boolean maxMotion;
+
+  // also written by setControlThreadVoltage
+  private volatile ControlMode controlMode = ControlMode.VOLTAGE;
+  private volatile double voltageSetpoint = 0.0;
+  private double velocitySetpoint = 0.0;
+  private double arbFeedforwardVolts = 0.0;
+  // the setpoint the emulated onboard loop is currently tracking, ramped when using MAXMotion
+  private double profiledSetpoint = 0.0;
+
+  private double velocity = 0.0;
+  private volatile double publishedVelocity = 0.0;
+  private double position = 0.0;
+  private double appliedVolts = 0.0;
+  private double currentPerMotor = 0.0;
+
+  // counts the frames the real IO would send, so sim shows the same bus savings
+  private final OutputCache outputCache = new OutputCache(Configs.OUTPUT_KEEP_ALIVE);
+  private boolean wasEnabled = false;
+
+  private final double[] sampleTimestamps;
+  private final double[] samplePositions;
+  private final double[] sampleVelocities;
+
+  public FlywheelIOSim() {
+    this(DEFAULT_SUBSTEP_RATE_HZ, false);
+  }
+
+  /**
+   * @param substepRateHz rate the flywheel and the onboard controller are integrated at
+   * @param maxMotion whether to emulate MAXMotion velocity control, which limits the setpoint's
+   *     acceleration, instead of plain velocity control
+   */
+  public FlywheelIOSim(double substepRateHz, boolean maxMotion) {
+    this.substeps = Math.max(1, (int) Math.round(substepRateHz * LOOP_PERIOD_SECONDS));
+    this.dt = LOOP_PERIOD_SECONDS / substeps;
+    this.maxMotion = maxMotion;
+    this.sampleTimestamps = new double[substeps];
+    this.samplePositions = new double[substeps];
+    this.sampleVelocities = new double[substeps];
+  }
+
+  @Override
+  public void setMotorVoltage(Voltage volts) {
+    controlMode = ControlMode.VOLTAGE;
+    voltageSetpoint = volts.in(Volts);
+    outputCache.shouldSend(ControlMode.VOLTAGE, 0, voltageSetpoint, 0.0);
+  }
+
+  @Override
+  public void setControlThreadVoltage(double volts) {
+    voltageSetpoint = volts;
+    controlMode = ControlMode.VOLTAGE;
+  }
+
+  @Override
+  public void setVelocitySetpoint(double rotationsPerSecond, double arbFeedforwardVolts) {
+    if (controlMode != ControlMode.VELOCITY) {
+      // MAXMotion profiles start from the current velocity
+      profiledSetpoint = velocity;
+    }
+    controlMode = ControlMode.VELOCITY;
+    velocitySetpoint = rotationsPerSecond;
+    this.arbFeedforwardVolts = arbFeedforwardVolts;
+    outputCache.shouldSend(ControlMode.VELOCITY, 0, rotationsPerSecond, arbFeedforwardVolts);
+  }
+
+  /**
+   * Simulates a ball leaving the shooter by instantly taking speed off the wheel.
+   *
+   * @param velocityLoss the speed lost, in rotations per second.
+   */
+  public void shoot(double velocityLoss) {
+    velocity = Math.signum(velocity) * Math.max(0.0, Math.abs(velocity) - velocityLoss);
+  }
+
+  @Override
+  public void updateInputs(FlywheelIOInputs inputs) {
+    double busVoltage = RobotController.getBatteryVoltage();
+    // integrate the loop that just ended, with the outputs set during it
+    double start = RobotController.getFPGATime() / 1e6 - LOOP_PERIOD_SECONDS;
+    for (int i = 0; i < substeps; i++) {
+      step(busVoltage);
+      sampleTimestamps[i] = start + (i + 1) * dt;
+      samplePositions[i] = position;
+      sampleVelocities[i] = velocity;
+    }
+    publishedVelocity = velocity;
+
+    inputs.sampleCount = substeps;
+    inputs.sampleTimestamps = sampleTimestamps;
+    inputs.samplePositions = samplePositions;
+    inputs.sampleVelocities = sampleVelocities;
+
+    boolean enabled = DriverStation.isEnabled();
+    if (enabled && !wasEnabled) {
+      outputCache.invalidate();
+    }
+    wasEnabled = enabled;
+    inputs.outputFramesSent = outputCache.getSentCount();
+    inputs.outputFramesSuppressed = outputCache.getSuppressedCount();
+
+    FlywheelMotorData motors = inputs.motors;
+    motors.leaderVelocity = velocity;
+    motors.leaderPosition = position;
+    motors.leaderAppliedOutput = appliedVolts / busVoltage;
+    motors.leaderBusVoltage = busVoltage;
+    motors.leaderCurrent = currentPerMotor;
+    motors.leaderTemperature = TEMPERATURE_CELSIUS;
+    motors.leaderFaults = 0;
+
+    // the follower is inverted
+    motors.followerVelocity = -velocity;
+    motors.followerPosition = -position;
+    motors.followerAppliedOutput = -appliedVolts / busVoltage;
+    motors.followerBusVoltage = busVoltage;
+    motors.followerCurrent = currentPerMotor;
+    motors.followerTemperature = TEMPERATURE_CELSIUS;
+    motors.followerFaults = 0;
+  }
+
+  private void step(double busVoltage) {
+    double volts;
+    if (controlMode == ControlMode.VELOCITY) {
+      double acceleration = 0.0;
+      if (maxMotion) {
+        double maxStep = Configs.MAX_ACCELERATION * dt;
+        double next =
+            profiledSetpoint
+                + MathUtil.clamp(velocitySetpoint - profiledSetpoint, -maxStep, maxStep);
+        acceleration = (next - profiledSetpoint) / dt;
+        profiledSetpoint = next;
+      } else {
+        profiledSetpoint = velocitySetpoint;
+      }
+      volts =
+          Configs.kS * Math.signum(profiledSetpoint)
+              + Configs.kV * profiledSetpoint
+              + Configs.kA * acceleration
+              + arbFeedforwardVolts
+              + Configs.kP * (profiledSetpoint - velocity) * busVoltage;
+    } else {
+      volts = voltageSetpoint;
+    }
+    volts = MathUtil.clamp(volts, -busVoltage, busVoltage);
+
+    // smart current limit: back off the voltage until each motor's current is within the limit
+    double backEmf = Units.rotationsToRadians(velocity) / motor.KvRadPerSecPerVolt;
+    double maxDrop = Configs.CURRENT_LIMIT * motor.rOhms;
+    volts = MathUtil.clamp(volts, backEmf - maxDrop, backEmf + maxDrop);
+    appliedVolts = volts;
+    currentPerMotor = Math.abs((volts - backEmf) / motor.rOhms);
+
+    // kinetic friction opposes motion; at rest, static friction holds unless it is overcome
+    double acceleration;
+    if (velocity != 0.0) {
+      acceleration =
+          (volts - Configs.kS * Math.signum(velocity) - Configs.kV * velocity) / Configs.kA;
+    } else if (Math.abs(volts) > Configs.kS) {
+      acceleration = (volts - Configs.kS * Math.signum(volts)) / Configs.kA;
+    } else {
+      acceleration = 0.0;
+    }
+    double nextVelocity = velocity + acceleration * dt;
+    if (velocity != 0.0 && Math.signum(nextVelocity) != Math.signum(velocity)) {
+      // friction can stop the wheel, but not reverse it
+      nextVelocity = 0.0;
+    }
+    position += (velocity + nextVelocity) / 2 * dt;
+    velocity = nextVelocity;
+  }
+
+  @Override
+  public double get() {
+    return appliedVolts / RobotController.getBatteryVoltage();
+  }
+
+  @Override
+  public double getVelocity() {
+    return publishedVelocity;
+  }
+
+  @Override
+  public double getPosition() {
+    return position;
+  }
+}
@@ -0,0 +1,259 @@
+package frc.robot.subsystems.flywheel;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.controller.LinearQuadraticRegulator;
+import edu.wpi.first.math.estimator.KalmanFilter;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.system.LinearSystem;
+import edu.wpi.first.math.system.LinearSystemLoop;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.utils.VirtualSubsystem;
+import frc.robot.utils.VirtualSubsystem.FastTierMode;
+import org.littletonrobotics.junction.AutoLog;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * roboRIO-side state-space velocity controller: an LQR and a Kalman filter on the identified
+ * flywheel model, wrapped in a {@link LinearSystemLoop}. It runs on the {@link VirtualSubsystem}
+ * fast tier at {@link Configs#LQR_PERIOD}, much faster than the main loop, and drives the motors
+ * with voltage commands. The LQR gain is compensated for {@link Configs#LQR_LATENCY}, the delay
+ * between reading the velocity and the voltage taking effect.
+ *
+ * <p>Enabling, disabling and changing the setpoint are thread safe. Every tick records what it ran
+ * with: its time, the velocity read from the IO, the battery voltage, and whether it was enabled
+ * and at what setpoint. The main loop logs the ticks since the last loop as inputs, and in replay
+ * re-runs them instead of running the fast tier, so replay reproduces every tick exactly. While
+ * disabled the ticks read nothing and are not recorded, except the one that notices the disable.
+ */
+public class FlywheelLQRController extends VirtualSubsystem {
+  /** Most ticks logged per main loop; more than enough for an overrunning loop. */
+  private static final int TICK_CAPACITY = 64;
+
+  /** The inputs of every tick run since the last main loop, oldest first. */
+  @AutoLog
+  public static class FlywheelLQRTicks {
+    /** Number of ticks, which is the length of each array. */
+    public int tickCount = 0;
+    /** Ticks not logged because the arrays were full, in total. Replay diverges after one. */
+    public long droppedTicks = 0;
+    /** When each tick ran, in seconds. */
+    public double[] timestamps = new double[0];
+    /** Velocity each tick read from the IO, in rotations per second. */
+    public double[] velocities = new double[0];
+    /** Battery voltage each tick limited its output to. */
+    public double[] batteryVoltages = new double[0];
+    /** Whether the controller was enabled during each tick. */
+    public boolean[] enabled = new boolean[0];
+    /** Setpoint during each tick, in rotations per second. */
+    public double[] setpoints = new double[0];
+  }
+
+  private final FlywheelIO io;
+  private final double period;
+  private final LinearSystemLoop<N1, N1, N1> loop;
+  private final Matrix<N1, N1> reference = new Matrix<>(Nat.N1(), Nat.N1());
+  private final Matrix<N1, N1> measurement = new Matrix<>(Nat.N1(), Nat.N1());
+  private final FlywheelLQRTicksAutoLogged ticks = new FlywheelLQRTicksAutoLogged();
+
+  // guarded by the fast tier lock
+  private boolean enabled = false;
+  private double setpoint = 0.0;
+  // ticks recorded by the fast tier since the last main loop
+  private int pendingCount = 0;
+  private long droppedTicks = 0;
+  private final double[] pendingTimestamps = new double[TICK_CAPACITY];
+  private final double[] pendingVelocities = new double[TICK_CAPACITY];
+  private final double[] pendingBatteryVoltages = new double[TICK_CAPACITY];
+  private final boolean[] pendingEnabled = new boolean[TICK_CAPACITY];
+  private final double[] pendingSetpoints = new double[TICK_CAPACITY];
+
+  // only touched by tick(), so the same live and in replay
+  private boolean wasEnabled = false;
+  private double lastTimestamp = Double.NaN;
+  private double latestReference = 0.0;
+  private double latestEstimate = 0.0;
+  private double latestVoltage = 0.0;
+  private double latestPeriod = 0.0;
+
+  /**
+   * Creates the controller. It does nothing until enabled.
+   *
+   * @param io the flywheel's IO. Only its thread safe methods are used.
+   */
+  public FlywheelLQRController(FlywheelIO io) {
+    this.io = io;
+    this.period = Configs.LQR_PERIOD;
+
+    LinearSystem<N1, N1, N1> plant = LinearSystemId.identifyVelocitySystem(Configs.kV, Configs.kA);
+    var observer =
+        new KalmanFilter<>(
+            Nat.N1(),
+            Nat.N1(),
+            plant,
+            VecBuilder.fill(Configs.LQR_MODEL_STD_DEV),
+            VecBuilder.fill(Configs.LQR_MEASUREMENT_STD_DEV),
+            period);
+    var controller =
+        new LinearQuadraticRegulator<>(
+            plant,
+            VecBuilder.fill(Configs.LQR_VELOCITY_TOLERANCE),
+            VecBuilder.fill(Configs.LQR_MAX_VOLTAGE),
+            period);
+    controller.latencyCompensate(plant, period, Configs.LQR_LATENCY);
+    loop = new LinearSystemLoop<>(plant, controller, observer, Configs.LQR_MAX_VOLTAGE, period);
+  }
+
+  /**
+   * Starts controlling the flywheel, or changes the setpoint if already enabled.
+   *
+   * @param rotationsPerSecond the velocity setpoint.
+   */
+  public void enable(double rotationsPerSecond) {
+    synchronized (getFastTierLock()) {
+      enabled = true;
+      setpoint = rotationsPerSecond;
+    }
+  }
+
+  /** Stops controlling the flywheel. The caller is responsible for setting a new output. */
+  public void disable() {
+    synchronized (getFastTierLock()) {
+      enabled = false;
+    }
+  }
+
+  public boolean isEnabled() {
+    synchronized (getFastTierLock()) {
+      return enabled;
+    }
+  }
+
+  @Override
+  public void periodic() {
+    // runs under the fast tier lock, so the pending ticks can be handed over directly. Only the
+    // recorded ticks are logged, so a loop the controller spends disabled logs empty arrays, which
+    // are unchanged from the previous loop and not written again.
+    int count = pendingCount;
+    ticks.tickCount = count;
+    ticks.droppedTicks = droppedTicks;
+    ticks.timestamps = copyOf(pendingTimestamps, count, ticks.timestamps);
+    ticks.velocities = copyOf(pendingVelocities, count, ticks.velocities);
+    ticks.batteryVoltages = copyOf(pendingBatteryVoltages, count, ticks.batteryVoltages);
+    ticks.enabled = copyOf(pendingEnabled, count, ticks.enabled);
+    ticks.setpoints = copyOf(pendingSetpoints, count, ticks.setpoints);
+    pendingCount = 0;
+    Logger.processInputs("Flywheel/LQR/Ticks", ticks);
+
+    if (getFastTierMode() == FastTierMode.REPLAYED) {
+      for (int i = 0; i < ticks.tickCount; i++) {
+        tick(
+            ticks.timestamps[i],
+            ticks.velocities[i],
+            ticks.batteryVoltages[i],
+            ticks.enabled[i],
+            ticks.setpoints[i]);
+      }
+    }
+
+    Logger.recordOutput("Flywheel/LQR/Enabled", wasEnabled);
+    Logger.recordOutput("Flywheel/LQR/Reference", latestReference);
+    Logger.recordOutput("Flywheel/LQR/Estimate", latestEstimate);
+    Logger.recordOutput("Flywheel/LQR/Voltage", latestVoltage);
+    Logger.recordOutput("Flywheel/LQR/PeriodMs", latestPeriod * 1000);
+  }
+
+  /**
+   * Copies the first {@code count} entries of an array, into the previous copy when it has the same
+   * length. The count only changes when the controller is enabled or disabled, so this rarely
+   * allocates.
+   */
+  private static double[] copyOf(double[] source, int count, double[] previous) {
+    double[] copy = previous.length == count ? previous : new double[count];
+    System.arraycopy(source, 0, copy, 0, count);
+    return copy;
+  }
+
+  private static boolean[] copyOf(boolean[] source, int count, boolean[] previous) {
+    boolean[] copy = previous.length == count ? previous : new boolean[count];
+    System.arraycopy(source, 0, copy, 0, count);
+    return copy;
+  }
+
+  @Override
+  public void periodicAfterScheduler() {}
+
+  @Override
+  protected double getFastPeriod() {
+    return period;
+  }
+
+  @Override
+  protected String getName() {
+    return "FlywheelLQR";
+  }
+
+  @Override
+  protected void fastPeriodic() {
+    if (!enabled && !wasEnabled) {
+      // nothing to control and the disable is already recorded, so skip the reads
+      return;
+    }
+    // on simulated time every synchronous tick would read the same clock, so space them nominally
+    double timestamp =
+        getFastTierMode() == FastTierMode.SYNCHRONOUS && !Double.isNaN(lastTimestamp)
+            ? lastTimestamp + period
+            : RobotController.getFPGATime() / 1e6;
+    // the tick noticing the disable only stops the controller, so it needs neither reading
+    double velocity = enabled ? io.getVelocity() : 0.0;
+    double batteryVoltage = enabled ? RobotController.getBatteryVoltage() : 0.0;
+    if (pendingCount < TICK_CAPACITY) {
+      pendingTimestamps[pendingCount] = timestamp;
+      pendingVelocities[pendingCount] = velocity;
+      pendingBatteryVoltages[pendingCount] = batteryVoltage;
+      pendingEnabled[pendingCount] = enabled;
+      pendingSetpoints[pendingCount] = setpoint;
+      pendingCount++;
+    } else {
+      droppedTicks++;
+    }
+    tick(timestamp, velocity, batteryVoltage, enabled, setpoint);
+  }
+
+  /** Runs the controller once. Depends only on its arguments and the previous ticks. */
+  private void tick(
+      double timestamp,
+      double velocity,
+      double batteryVoltage,
+      boolean tickEnabled,
+      double tickSetpoint) {
+    boolean reset = tickEnabled && !wasEnabled;
+    wasEnabled = tickEnabled;
+    if (!tickEnabled) {
+      // no ticks run until the next enable, so do not measure the gap as a period
+      lastTimestamp = Double.NaN;
+      return;
+    }
+    latestPeriod = Double.isNaN(lastTimestamp) ? period : timestamp - lastTimestamp;
+    lastTimestamp = timestamp;
+
+    if (reset) {
+      measurement.set(0, 0, velocity);
+      loop.reset(measurement);
+    }
+    latestReference = tickSetpoint;
+    reference.set(0, 0, tickSetpoint);
+    loop.setNextR(reference);
+    measurement.set(0, 0, velocity);
+    loop.correct(measurement);
+    loop.predict(period);
+
+    double volts = Math.max(-batteryVoltage, Math.min(batteryVoltage, loop.getU(0)));
+    io.setControlThreadVoltage(volts);
+
+    latestEstimate = loop.getXHat(0);
+    latestVoltage = volts;
+  }
+}
@@ -0,0 +1,113 @@
+package frc.robot.subsystems.flywheel;
+
+import edu.wpi.first.util.struct.Struct;
+import edu.wpi.first.util.struct.StructSerializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Telemetry for both flywheel motors, filled in place every loop and logged as a single packed
+ * struct record.
+ */
+public class FlywheelMotorData implements StructSerializable {
+  /** Rotations per second. */
+  public double leaderVelocity = 0.0;
+  /** Rotations. */
+  public double leaderPosition = 0.0;
+  /** Duty cycle, from -1 to 1. */
+  public double leaderAppliedOutput = 0.0;
+  /** Volts. */
+  public double leaderBusVoltage = 0.0;
+  /** Amps. */
+  public double leaderCurrent = 0.0;
+  /** Degrees Celsius. */
+  public double leaderTemperature = 0.0;
+  /** Raw fault bits. */
+  public int leaderFaults = 0;
+
+  /** Rotations per second. */
+  public double followerVelocity = 0.0;
+  /** Rotations. */
+  public double followerPosition = 0.0;
+  /** Duty cycle, from -1 to 1. */
+  public double followerAppliedOutput = 0.0;
+  /** Volts. */
+  public double followerBusVoltage = 0.0;
+  /** Amps. */
+  public double followerCurrent = 0.0;
+  /** Degrees Celsius. */
+  public double followerTemperature = 0.0;
+  /** Raw fault bits. */
+  public int followerFaults = 0;
+
+  public static final FlywheelMotorDataStruct struct = new FlywheelMotorDataStruct();
+
+  public static class FlywheelMotorDataStruct implements Struct<FlywheelMotorData> {
+    @Override
+    public Class<FlywheelMotorData> getTypeClass() {
+      return FlywheelMotorData.class;
+    }
+
+    @Override
+    public String getTypeName() {
+      return "FlywheelMotorData";
+    }
+
+    @Override
+    public int getSize() {
+      return 12 * kSizeDouble + 2 * kSizeInt32;
+    }
+
+    @Override
+    public String getSchema() {
+      return "double leader_velocity;double leader_position;double leader_applied_output;"
+          + "double leader_bus_voltage;double leader_current;double leader_temperature;"
+          + "int32 leader_faults;"
+          + "double follower_velocity;double follower_position;double follower_applied_output;"
+          + "double follower_bus_voltage;double follower_current;double follower_temperature;"
+          + "int32 follower_faults";
+    }
+
+    @Override
+    public FlywheelMotorData unpack(ByteBuffer bb) {
+      var data = new FlywheelMotorData();
+      unpackInto(data, bb);
+      return data;
+    }
+
+    @Override
+    public void unpackInto(FlywheelMotorData out, ByteBuffer bb) {
+      out.leaderVelocity = bb.getDouble();
+      out.leaderPosition = bb.getDouble();
+      out.leaderAppliedOutput = bb.getDouble();
+      out.leaderBusVoltage = bb.getDouble();
+      out.leaderCurrent = bb.getDouble();
+      out.leaderTemperature = bb.getDouble();
+      out.leaderFaults = bb.getInt();
+      out.followerVelocity = bb.getDouble();
+      out.followerPosition = bb.getDouble();
+      out.followerAppliedOutput = bb.getDouble();
+      out.followerBusVoltage = bb.getDouble();
+      out.followerCurrent = bb.getDouble();
+      out.followerTemperature = bb.getDouble();
+      out.followerFaults = bb.getInt();
+    }
+
+    @Override
+    public void pack(ByteBuffer bb, FlywheelMotorData value) {
+      bb.putDouble(value.leaderVelocity);
+      bb.putDouble(value.leaderPosition);
+      bb.putDouble(value.leaderAppliedOutput);
+      bb.putDouble(value.leaderBusVoltage);
+      bb.putDouble(value.leaderCurrent);
+      bb.putDouble(value.leaderTemperature);
+      bb.putInt(value.leaderFaults);
+      bb.putDouble(value.followerVelocity);
+      bb.putDouble(value.followerPosition);
+      bb.putDouble(value.followerAppliedOutput);
+      bb.putDouble(value.followerBusVoltage);
+      bb.putDouble(value.followerCurrent);
+      bb.putDouble(value.followerTemperature);
+      bb.putInt(value.followerFaults);
+    }
+  }
+}
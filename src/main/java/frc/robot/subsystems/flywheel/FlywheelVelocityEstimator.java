@@ -0,0 +1,197 @@
+package frc.robot.subsystems.flywheel;
+
+import lombok.Getter;
+
+/**
+ * Kalman filter estimating the flywheel's velocity and acceleration from timestamped encoder
+ * position samples and the applied voltage, using the identified model in {@link Configs}. Unlike
+ * the SparkFlex's own velocity measurement, which is averaged over a window and lags real changes
+ * by tens of milliseconds, every position sample corrects the estimate as soon as it arrives.
+ *
+ * <p>The state is position, velocity and a disturbance acceleration:
+ *
+ * <pre>
+ *   p' = v
+ *   v' = (V - kS sgn(v) - kV v) / kA + d
+ *   d' = noise
+ * </pre>
+ *
+ * The disturbance absorbs whatever the model does not explain, such as a ball being fired, so the
+ * estimate follows a shot without waiting for the velocity to be re-measured. Everything is kept in
+ * primitive fields and preallocated arrays, so updating never allocates.
+ */
+public class FlywheelVelocityEstimator {
+  /** Samples further apart than this restart the filter, in seconds. */
+  static final double MAX_SAMPLE_GAP = 0.1;
+
+  private static final double INITIAL_VELOCITY_VARIANCE = 100.0;
+  private static final double INITIAL_DISTURBANCE_VARIANCE = 1e4;
+
+  private final double positionVariance;
+  private final double velocityNoiseDensity;
+  private final double disturbanceNoiseDensity;
+
+  private boolean initialized = false;
+  private double lastTimestamp = 0.0;
+  private double position = 0.0;
+  private double velocity = 0.0;
+  private double disturbance = 0.0;
+  // covariance, row major
+  private final double[] p = new double[9];
+  private final double[] f = new double[9];
+  private final double[] temp = new double[9];
+
+  /** Estimated velocity at the time of the last update, in rotations per second. */
+  @Getter private double estimatedVelocity = 0.0;
+
+  /** Estimated acceleration at the time of the last update, in rotations per second squared. */
+  @Getter private double estimatedAcceleration = 0.0;
+
+  /** Acceleration not explained by the model, in rotations per second squared. */
+  @Getter private double estimatedDisturbance = 0.0;
+
+  public FlywheelVelocityEstimator() {
+    this(
+        Configs.ESTIMATOR_POSITION_STD_DEV,
+        Configs.ESTIMATOR_VELOCITY_STD_DEV,
+        Configs.ESTIMATOR_DISTURBANCE_STD_DEV);
+  }
+
+  /**
+   * @param positionStdDev standard deviation of a position sample, in rotations
+   * @param velocityStdDev model error in velocity, in rotations per second per root second
+   * @param disturbanceStdDev how fast the disturbance can change, in rotations per second squared
+   *     per root second
+   */
+  public FlywheelVelocityEstimator(
+      double positionStdDev, double velocityStdDev, double disturbanceStdDev) {
+    this.positionVariance = positionStdDev * positionStdDev;
+    this.velocityNoiseDensity = velocityStdDev * velocityStdDev;
+    this.disturbanceNoiseDensity = disturbanceStdDev * disturbanceStdDev;
+  }
+
+  /**
+   * Corrects the estimate with new samples, then predicts it forward to the current time.
+   *
+   * @param timestamps sample timestamps, in seconds, oldest first.
+   * @param positions sample positions, in rotations.
+   * @param count number of leading entries of the arrays that hold samples.
+   * @param volts the voltage applied since the last update.
+   * @param fallbackVelocity the measured velocity, used to start the filter.
+   * @param now the current time, in seconds.
+   */
+  public void update(
+      double[] timestamps,
+      double[] positions,
+      int count,
+      double volts,
+      double fallbackVelocity,
+      double now) {
+    for (int i = 0; i < count; i++) {
+      double dt = timestamps[i] - lastTimestamp;
+      if (!initialized || dt > MAX_SAMPLE_GAP || dt < 0) {
+        reset(timestamps[i], positions[i], fallbackVelocity);
+        continue;
+      }
+      if (dt > 0) {
+        predict(dt, volts);
+        correct(positions[i]);
+      }
+      lastTimestamp = timestamps[i];
+    }
+    if (!initialized) {
+      estimatedVelocity = fallbackVelocity;
+      estimatedAcceleration = 0.0;
+      estimatedDisturbance = 0.0;
+      return;
+    }
+
+    // extrapolate from the last sample to now without touching the filter's state
+    double acceleration = acceleration(velocity, disturbance, volts);
+    double lead = Math.max(0.0, Math.min(MAX_SAMPLE_GAP, now - lastTimestamp));
+    estimatedVelocity = velocity + acceleration * lead;
+    estimatedAcceleration = acceleration;
+    estimatedDisturbance = disturbance;
+  }
+
+  /** Restarts the filter at a known position and velocity. */
+  public void reset(double timestamp, double position, double velocity) {
+    initialized = true;
+    lastTimestamp = timestamp;
+    this.position = position;
+    this.velocity = velocity;
+    this.disturbance = 0.0;
+    for (int i = 0; i < 9; i++) {
+      p[i] = 0.0;
+    }
+    p[0] = positionVariance;
+    p[4] = INITIAL_VELOCITY_VARIANCE;
+    p[8] = INITIAL_DISTURBANCE_VARIANCE;
+  }
+
+  private static double acceleration(double velocity, double disturbance, double volts) {
+    return (volts - Configs.kS * Math.signum(velocity) - Configs.kV * velocity) / Configs.kA
+        + disturbance;
+  }
+
+  private void predict(double dt, double volts) {
+    double decay = Configs.kV / Configs.kA;
+    double acceleration = acceleration(velocity, disturbance, volts);
+    position += velocity * dt + 0.5 * acceleration * dt * dt;
+    velocity += acceleration * dt;
+
+    // linearized transition, ignoring kS, which is constant between zero crossings
+    f[0] = 1;
+    f[1] = dt - 0.5 * decay * dt * dt;
+    f[2] = 0.5 * dt * dt;
+    f[3] = 0;
+    f[4] = 1 - decay * dt;
+    f[5] = dt;
+    f[6] = 0;
+    f[7] = 0;
+    f[8] = 1;
+
+    // P = F P F^T + Q
+    for (int r = 0; r < 3; r++) {
+      for (int c = 0; c < 3; c++) {
+        temp[r * 3 + c] = f[r * 3] * p[c] + f[r * 3 + 1] * p[3 + c] + f[r * 3 + 2] * p[6 + c];
+      }
+    }
+    for (int r = 0; r < 3; r++) {
+      for (int c = 0; c < 3; c++) {
+        p[r * 3 + c] =
+            temp[r * 3] * f[c * 3]
+                + temp[r * 3 + 1] * f[c * 3 + 1]
+                + temp[r * 3 + 2] * f[c * 3 + 2];
+      }
+    }
+    p[4] += velocityNoiseDensity * dt;
+    p[8] += disturbanceNoiseDensity * dt;
+  }
+
+  private void correct(double measuredPosition) {
+    // the measurement is the position alone, so H = [1 0 0]
+    double innovation = measuredPosition - position;
+    double s = p[0] + positionVariance;
+    double k0 = p[0] / s;
+    double k1 = p[3] / s;
+    double k2 = p[6] / s;
+    position += k0 * innovation;
+    velocity += k1 * innovation;
+    disturbance += k2 * innovation;
+
+    // P = (I - K H) P
+    double p0 = p[0];
+    double p1 = p[1];
+    double p2 = p[2];
+    p[0] -= k0 * p0;
+    p[1] -= k0 * p1;
+    p[2] -= k0 * p2;
+    p[3] -= k1 * p0;
+    p[4] -= k1 * p1;
+    p[5] -= k1 * p2;
+    p[6] -= k2 * p0;
+    p[7] -= k2 * p1;
+    p[8] -= k2 * p2;
+  }
+}
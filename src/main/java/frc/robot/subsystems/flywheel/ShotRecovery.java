@@ -0,0 +1,98 @@
+package frc.robot.subsystems.flywheel;
+
+import edu.wpi.first.math.MathUtil;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Detects shots from the flywheel's velocity and current, and computes a feedforward voltage boost
+ * to recover from them faster than the onboard velocity loop's small P gain would on its own.
+ *
+ * <p>Once the wheel has settled at its setpoint, a shot is a drop in velocity of at least {@link
+ * Configs#SHOT_MIN_VELOCITY_DROP} (or {@link Configs#SHOT_VELOCITY_DROP_FRACTION} of the setpoint)
+ * together with a rise in total current of at least {@link Configs#SHOT_MIN_CURRENT_RISE} over the
+ * settled current. After a shot, the boost is proportional to the velocity error, limited to {@link
+ * Configs#SHOT_MAX_BOOST}, and ends when the wheel is back at speed or after {@link
+ * Configs#SHOT_BOOST_WINDOW}, whichever is first.
+ */
+public class ShotRecovery {
+  /** Smoothing of the settled current, per loop. */
+  private static final double BASELINE_CURRENT_ALPHA = 0.1;
+
+  /** Whether the boost is applied. Shots are detected and counted either way. */
+  @Getter @Setter private boolean boostEnabled = true;
+
+  /** Number of shots detected. */
+  @Getter private int shotCount = 0;
+
+  /** Seconds from the last detected shot until the wheel was back at speed, or NaN if none yet. */
+  @Getter private double lastRecoveryTime = Double.NaN;
+
+  /** The feedforward boost to apply this loop, in volts. */
+  @Getter private double boostVolts = 0.0;
+
+  @Getter private boolean recovering = false;
+
+  private boolean settled = false;
+  private double lastSetpoint = 0.0;
+  private double baselineCurrent = 0.0;
+  private double shotTime = 0.0;
+
+  /**
+   * Updates shot detection with the latest measurements. Called once per loop.
+   *
+   * @param now the current time, in seconds.
+   * @param setpoint the velocity setpoint, in rotations per second, or 0 when not in velocity
+   *     control.
+   * @param velocity the measured velocity, in rotations per second.
+   * @param current the total current of both motors, in amps.
+   */
+  public void update(double now, double setpoint, double velocity, double current) {
+    double tolerance = Configs.atSpeedTolerance(setpoint);
+    boolean atSpeed = setpoint > 0.0 && Math.abs(velocity - setpoint) <= tolerance;
+    if (setpoint <= 0.0 || Math.abs(setpoint - lastSetpoint) > tolerance) {
+      // a new setpoint, so the wheel has to settle again before shots are detected
+      settled = false;
+      recovering = false;
+    }
+    lastSetpoint = setpoint;
+    boostVolts = 0.0;
+
+    if (recovering) {
+      if (atSpeed) {
+        recovering = false;
+        lastRecoveryTime = now - shotTime;
+      } else if (boostEnabled && now - shotTime < Configs.SHOT_BOOST_WINDOW) {
+        boostVolts = boost(setpoint, velocity);
+      }
+      return;
+    }
+
+    if (!settled) {
+      if (atSpeed) {
+        settled = true;
+        baselineCurrent = current;
+      }
+      return;
+    }
+
+    double drop = setpoint - velocity;
+    double minDrop =
+        Math.max(Configs.SHOT_MIN_VELOCITY_DROP, Configs.SHOT_VELOCITY_DROP_FRACTION * setpoint);
+    if (drop >= minDrop && current - baselineCurrent >= Configs.SHOT_MIN_CURRENT_RISE) {
+      shotCount++;
+      recovering = true;
+      shotTime = now;
+      if (boostEnabled) {
+        boostVolts = boost(setpoint, velocity);
+      }
+    } else {
+      baselineCurrent += BASELINE_CURRENT_ALPHA * (current - baselineCurrent);
+    }
+  }
+
+  private static double boost(double setpoint, double velocity) {
+    return MathUtil.clamp(
+        Configs.SHOT_BOOST_GAIN * (setpoint - velocity), 0.0, Configs.SHOT_MAX_BOOST);
+  }
+}
@@ -0,0 +1,91 @@
+package frc.robot.subsystems.flywheel;
+
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.spark.SparkFlex;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.utils.EncoderSampleBuffer;
+
+/**
+ * Reads a SparkFlex's primary encoder on a dedicated {@link Notifier} thread and writes
+ * timestamped samples into an {@link EncoderSampleBuffer}, so the main loop can drain the full
+ * high-rate waveform in one batch instead of making its own JNI reads.
+ *
+ * <p>A read between two status frames returns the cached value of the last frame. Such repeats are
+ * not new measurements, so a sample whose position and velocity both equal the previous sample's
+ * is dropped. When the encoder frames are slower than the sampling rate, the buffer holds one
+ * sample per frame instead of a staircase.
+ */
+public class SparkFlexSampler implements AutoCloseable {
+  public static final double MIN_RATE_HZ = 200;
+  public static final double MAX_RATE_HZ = 1000;
+
+  private final RelativeEncoder encoder;
+  private final EncoderSampleBuffer buffer;
+  private final Notifier notifier;
+  private final double rateHz;
+  private volatile double latestVelocity = 0.0;
+  // only touched by the sampling thread
+  private double lastPosition = Double.NaN;
+
+  /**
+   * Creates a new sampler. It does not read the encoder until {@link #start()}.
+   *
+   * @param spark the motor controller to read.
+   * @param rateHz the sampling rate, clamped to between {@link #MIN_RATE_HZ} and {@link
+   *     #MAX_RATE_HZ}. Sampling faster than the encoder status frames only reads repeats, which
+   *     are dropped.
+   * @param name the name of the sampling thread.
+   */
+  public SparkFlexSampler(SparkFlex spark, double rateHz, String name) {
+    this.encoder = spark.getEncoder();
+    this.rateHz = MathUtil.clamp(rateHz, MIN_RATE_HZ, MAX_RATE_HZ);
+    // room for a few main loops worth of samples in case of an overrun
+    this.buffer = new EncoderSampleBuffer((int) (this.rateHz * 0.1));
+    this.notifier = new Notifier(this::sample);
+    this.notifier.setName(name);
+  }
+
+  /** Starts sampling. Must only be called once. */
+  public void start() {
+    notifier.startPeriodic(1.0 / rateHz);
+  }
+
+  private void sample() {
+    double position = encoder.getPosition();
+    double velocity = encoder.getVelocity();
+    if (position == lastPosition && velocity == latestVelocity) {
+      return;
+    }
+    buffer.offer(RobotController.getFPGATime() / 1e6, position, velocity);
+    lastPosition = position;
+    latestVelocity = velocity;
+  }
+
+  /**
+   * @return the velocity read by the last sample. Safe to call from any thread.
+   */
+  public double getLatestVelocity() {
+    return latestVelocity;
+  }
+
+  /**
+   * @return the buffer samples are written to. Only one thread may drain it.
+   */
+  public EncoderSampleBuffer getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * @return the sampling rate after clamping, in Hz.
+   */
+  public double getRateHz() {
+    return rateHz;
+  }
+
+  @Override
+  public void close() {
+    notifier.close();
+  }
+}
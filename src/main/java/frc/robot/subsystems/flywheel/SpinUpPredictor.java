@@ -0,0 +1,135 @@
+package frc.robot.subsystems.flywheel;
+
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.util.Units;
+import java.util.Arrays;
+
+/**
+ * Predicts how long the flywheel will take to reach its setpoint, from the identified model in
+ * {@link Configs} under the onboard velocity loop: feedforward plus {@link Configs#kP} times the
+ * velocity error, limited by the battery voltage and each motor's smart current limit, exactly as
+ * {@link FlywheelIOSim} emulates it. Controllers that push harder, such as {@link
+ * FlywheelLQRController}, get there sooner, so the prediction is conservative for them.
+ *
+ * <p>Between the velocities where a limit starts or stops applying, or kS changes sign, the applied
+ * voltage is linear in the velocity, so the model is a first order linear system. The time to cross
+ * each such range is solved in closed form, so a prediction costs the same however far the wheel is
+ * from its setpoint. Predicting never allocates.
+ */
+public class SpinUpPredictor {
+  /** Longest time predicted, in seconds. Anything longer is reported as never. */
+  private static final double HORIZON = 3.0;
+
+  private final DCMotor motor = DCMotor.getNeoVortex(1);
+
+  /** Back EMF, in volts per rotation per second. */
+  private final double backEmfPerVelocity = Units.rotationsToRadians(1) / motor.KvRadPerSecPerVolt;
+
+  /** Most velocities where the voltage changes which limit applies, plus where kS changes sign. */
+  private final double[] breakpoints = new double[9];
+
+  private int breakpointCount;
+
+  // the model, for the prediction in progress
+  private double batteryVoltage;
+  private double gain;
+  private double proportionalIntercept;
+  private double maxDrop;
+
+  /**
+   * Predicts the time until the wheel is at speed.
+   *
+   * @param velocity the current velocity, in rotations per second.
+   * @param setpoint the velocity setpoint, in rotations per second.
+   * @param batteryVoltage the battery voltage.
+   * @return the time, in seconds, 0 if already at speed, or {@link Double#POSITIVE_INFINITY} if it
+   *     will not get there within a few seconds.
+   */
+  public double timeToReady(double velocity, double setpoint, double batteryVoltage) {
+    double tolerance = Configs.atSpeedTolerance(setpoint);
+    if (Math.abs(velocity - setpoint) <= tolerance) {
+      return 0.0;
+    }
+    if (!(batteryVoltage > 0.0)) {
+      return Double.POSITIVE_INFINITY;
+    }
+
+    // the wheel is at speed once it reaches the near edge of the tolerance
+    double target = velocity < setpoint ? setpoint - tolerance : setpoint + tolerance;
+    double feedforward = Configs.kS * Math.signum(setpoint) + Configs.kV * setpoint;
+    this.batteryVoltage = batteryVoltage;
+    this.gain = Configs.kP * batteryVoltage;
+    // the onboard loop's voltage is proportionalIntercept - gain * velocity
+    this.proportionalIntercept = feedforward + gain * setpoint;
+    this.maxDrop = Configs.CURRENT_LIMIT * motor.rOhms;
+
+    double low = Math.min(velocity, target);
+    double high = Math.max(velocity, target);
+    breakpointCount = 0;
+    addBreakpoint((proportionalIntercept - batteryVoltage) / gain, low, high);
+    addBreakpoint((proportionalIntercept + batteryVoltage) / gain, low, high);
+    addBreakpoint((batteryVoltage - maxDrop) / backEmfPerVelocity, low, high);
+    addBreakpoint((batteryVoltage + maxDrop) / backEmfPerVelocity, low, high);
+    addBreakpoint((-batteryVoltage - maxDrop) / backEmfPerVelocity, low, high);
+    addBreakpoint((-batteryVoltage + maxDrop) / backEmfPerVelocity, low, high);
+    addBreakpoint((proportionalIntercept - maxDrop) / (backEmfPerVelocity + gain), low, high);
+    addBreakpoint((proportionalIntercept + maxDrop) / (backEmfPerVelocity + gain), low, high);
+    addBreakpoint(0.0, low, high);
+    Arrays.sort(breakpoints, 0, breakpointCount);
+
+    boolean rising = velocity < target;
+    double time = 0.0;
+    double from = velocity;
+    for (int i = 0; i <= breakpointCount; i++) {
+      double to = i == breakpointCount ? target : breakpoints[rising ? i : breakpointCount - 1 - i];
+      time += timeBetween(from, to);
+      if (!(time <= HORIZON)) {
+        return Double.POSITIVE_INFINITY;
+      }
+      from = to;
+    }
+    return time;
+  }
+
+  private void addBreakpoint(double velocity, double low, double high) {
+    if (velocity > low && velocity < high) {
+      breakpoints[breakpointCount++] = velocity;
+    }
+  }
+
+  /**
+   * @return the time to go from one velocity to another, between which the same limits apply, or
+   *     {@link Double#POSITIVE_INFINITY} if the wheel does not accelerate toward the second.
+   */
+  private double timeBetween(double from, double to) {
+    if (from == to) {
+      return 0.0;
+    }
+    // the applied voltage is intercept + slope * velocity throughout
+    double middle = (from + to) / 2;
+    double intercept = proportionalIntercept;
+    double slope = -gain;
+    double volts = intercept + slope * middle;
+    if (volts > batteryVoltage || volts < -batteryVoltage) {
+      intercept = Math.copySign(batteryVoltage, volts);
+      slope = 0.0;
+      volts = intercept;
+    }
+    double backEmf = backEmfPerVelocity * middle;
+    if (volts > backEmf + maxDrop || volts < backEmf - maxDrop) {
+      intercept = Math.copySign(maxDrop, volts - backEmf);
+      slope = backEmfPerVelocity;
+    }
+
+    // dv/dt = (volts - kS sgn(v) - kV v) / kA, which is rate + decay * (v - from)
+    double decay = (slope - Configs.kV) / Configs.kA;
+    double rate =
+        (intercept - Configs.kS * Math.signum(middle) + (slope - Configs.kV) * from) / Configs.kA;
+    double change = to - from;
+    double finalRate = rate + decay * change;
+    if (rate * change <= 0.0 || finalRate * change <= 0.0) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return decay == 0.0 ? change / rate : Math.log1p(decay * change / rate) / decay;
+  }
+}
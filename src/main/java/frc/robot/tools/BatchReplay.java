@@ -0,0 +1,174 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Replays every WPILOG in a directory through the robot code, in parallel. AdvantageKit's logger is
+ * a process-wide singleton, so each log is replayed by its own JVM running {@link frc.robot.Main}
+ * in REPLAY mode, with at most one JVM per core. Each replay writes its "_sim" log next to the
+ * original, and its console output to a "_sim.txt" file. A summary of every replay's wall time and
+ * loop statistics is printed and written to "replay-summary.csv" in the directory.
+ *
+ * <p>Run with "./gradlew replayBatch -PlogDir=path/to/logs", optionally with "-Pjobs=N" to limit
+ * the number of replays at once.
+ */
+public final class BatchReplay {
+  private static final String LOG_EXTENSION = ".wpilog";
+  private static final String SIM_SUFFIX = "_sim";
+  private static final String[] STAT_KEYS = {"loops", "meanMs", "p50Ms", "p99Ms", "maxMs"};
+
+  private BatchReplay() {}
+
+  private record Result(Path log, int exitCode, double wallSeconds, Map<String, String> stats) {}
+
+  /**
+   * @param args the directory of logs, and optionally the maximum number of replays at once.
+   */
+  public static void main(String... args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: BatchReplay <log directory> [jobs]");
+      System.exit(2);
+    }
+    Path directory = Path.of(args[0]);
+    int jobs =
+        args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+    List<Path> logs;
+    try (Stream<Path> files = Files.list(directory)) {
+      logs =
+          files
+              .filter(
+                  path -> {
+                    String name = path.getFileName().toString();
+                    return name.endsWith(LOG_EXTENSION)
+                        && !name.endsWith(SIM_SUFFIX + LOG_EXTENSION);
+                  })
+              .sorted()
+              .toList();
+    }
+    if (logs.isEmpty()) {
+      System.err.println("No logs found in " + directory.toAbsolutePath());
+      System.exit(1);
+    }
+    jobs = Math.max(1, Math.min(jobs, logs.size()));
+    System.out.println("Replaying " + logs.size() + " logs, " + jobs + " at a time");
+
+    long start = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(jobs);
+    List<Future<Result>> futures = new ArrayList<>();
+    for (Path log : logs) {
+      futures.add(executor.submit(() -> replay(log)));
+    }
+    List<Result> results = new ArrayList<>();
+    for (Future<Result> future : futures) {
+      Result result = future.get();
+      results.add(result);
+      System.out.printf(
+          "  %s: %s in %.1f s%n",
+          result.log().getFileName(),
+          result.exitCode() == 0 ? "done" : "FAILED (exit code " + result.exitCode() + ")",
+          result.wallSeconds());
+    }
+    executor.shutdown();
+    double totalSeconds = (System.nanoTime() - start) / 1e9;
+
+    Path summary = directory.resolve("replay-summary.csv");
+    writeSummary(summary, results);
+    printSummary(results, totalSeconds);
+    System.out.println("Summary written to " + summary.toAbsolutePath());
+
+    boolean anyFailed = results.stream().anyMatch(result -> result.exitCode() != 0);
+    System.exit(anyFailed ? 1 : 0);
+  }
+
+  private static Result replay(Path log) throws IOException, InterruptedException {
+    String javaHome = System.getProperty("java.home");
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(javaHome, "bin", "java").toString());
+    command.add("-Djava.library.path=" + System.getProperty("java.library.path", ""));
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add("frc.robot.Main");
+
+    String name = log.getFileName().toString();
+    String baseName = name.substring(0, name.length() - LOG_EXTENSION.length());
+    File output = log.resolveSibling(baseName + SIM_SUFFIX + ".txt").toFile();
+
+    ProcessBuilder builder = new ProcessBuilder(command);
+    builder.environment().put("ROBOT_SIM_MODE", "REPLAY");
+    builder.environment().put("AKIT_LOG_PATH", log.toAbsolutePath().toString());
+    // replay requires that all HAL sim extensions be disabled
+    builder.environment().remove("HALSIM_EXTENSIONS");
+    builder.redirectErrorStream(true);
+    builder.redirectOutput(output);
+
+    long start = System.nanoTime();
+    int exitCode = builder.start().waitFor();
+    double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+    Map<String, String> stats = Map.of();
+    for (String line : Files.readAllLines(output.toPath())) {
+      Map<String, String> parsed = ReplayStats.parse(line);
+      if (parsed != null) {
+        stats = parsed;
+      }
+    }
+    return new Result(log, exitCode, wallSeconds, stats);
+  }
+
+  private static void writeSummary(Path path, List<Result> results) throws IOException {
+    try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path))) {
+      writer.println("log,exitCode,wallSeconds," + String.join(",", STAT_KEYS));
+      for (Result result : results) {
+        writer.print(
+            String.format(
+                Locale.ROOT,
+                "%s,%d,%.3f",
+                result.log().getFileName(),
+                result.exitCode(),
+                result.wallSeconds()));
+        for (String key : STAT_KEYS) {
+          writer.print("," + result.stats().getOrDefault(key, ""));
+        }
+        writer.println();
+      }
+    }
+  }
+
+  private static void printSummary(List<Result> results, double totalSeconds) {
+    double sumSeconds = 0.0;
+    double worstP99 = 0.0;
+    double worstMax = 0.0;
+    long loops = 0;
+    int failed = 0;
+    for (Result result : results) {
+      sumSeconds += result.wallSeconds();
+      if (result.exitCode() != 0) {
+        failed++;
+      }
+      Map<String, String> stats = result.stats();
+      loops += Long.parseLong(stats.getOrDefault("loops", "0"));
+      worstP99 = Math.max(worstP99, Double.parseDouble(stats.getOrDefault("p99Ms", "0")));
+      worstMax = Math.max(worstMax, Double.parseDouble(stats.getOrDefault("maxMs", "0")));
+    }
+    System.out.println("========== Batch replay summary ==========");
+    System.out.printf(
+        "%d logs (%d failed), %d loops, %.1f s wall time (%.1f s if run one at a time)%n",
+        results.size(), failed, loops, totalSeconds, sumSeconds);
+    System.out.printf("Worst loop p99 %.3f ms, worst loop %.3f ms%n", worstP99, worstMax);
+  }
+}
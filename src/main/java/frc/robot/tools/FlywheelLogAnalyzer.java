@@ -0,0 +1,479 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.tools;
+
+import frc.robot.subsystems.flywheel.Configs;
+import frc.robot.subsystems.flywheel.ShotRecovery;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Offline flywheel performance analysis of WPILOG files. Each log is memory mapped and its records
+ * are walked in a single pass, decoding only the flywheel signals in place, so logs never have to
+ * fit on the heap.
+ *
+ * <p>The signals read are the logged flywheel inputs ("/Flywheel/Motors"), the velocity setpoint
+ * output ("Flywheel/VelocitySetpoint") and the flywheel state machine's active state
+ * ("Internal/State/FlywheelStates"). Per log and per state, the time spent in the state, spin-up
+ * times, shots and their recovery times, steady-state velocity error and current draw are written
+ * to "&lt;out&gt;.csv" and "&lt;out&gt;.json". Shots are detected by the robot's {@link
+ * ShotRecovery}, the same detector the robot runs.
+ *
+ * <p>Run with "./gradlew analyzeFlywheelLogs -PlogDir=path/to/logs". Arguments are log files or
+ * directories of logs, "--out &lt;path&gt;" to change the output name (default
+ * "flywheel-analysis") and "--replay" to read the outputs of a replay ("/ReplayOutputs") instead of
+ * the ones logged on the robot ("/RealOutputs").
+ */
+public final class FlywheelLogAnalyzer {
+  private static final byte[] MAGIC = "WPILOG".getBytes(StandardCharsets.US_ASCII);
+  private static final String MOTORS_NAME = "/Flywheel/Motors";
+  private static final String MOTORS_TYPE = "struct:FlywheelMotorData";
+  private static final String SETPOINT_SUFFIX = "Flywheel/VelocitySetpoint";
+  private static final String STATE_SUFFIX = "Internal/State/FlywheelStates";
+  private static final String NO_STATE = "(none)";
+
+  // byte offsets into a packed FlywheelMotorData
+  private static final int LEADER_VELOCITY_OFFSET = 0;
+  private static final int LEADER_CURRENT_OFFSET = 32;
+  private static final int FOLLOWER_CURRENT_OFFSET = 52 + 32;
+  private static final int MOTORS_SIZE = 12 * 8 + 2 * 4;
+
+  private static final byte KIND_NONE = 0;
+  private static final byte KIND_MOTORS = 1;
+  private static final byte KIND_SETPOINT = 2;
+  private static final byte KIND_STATE = 3;
+
+  private FlywheelLogAnalyzer() {}
+
+  public static void main(String... args) throws IOException {
+    String outputsPrefix = "/RealOutputs";
+    Path out = Path.of("flywheel-analysis");
+    List<Path> logs = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--out" -> out = Path.of(args[++i]);
+        case "--replay" -> outputsPrefix = "/ReplayOutputs";
+        default -> addLogs(Path.of(args[i]), logs);
+      }
+    }
+    if (logs.isEmpty()) {
+      System.err.println(
+          "Usage: FlywheelLogAnalyzer [--out <path>] [--replay] <log or directory>...");
+      System.exit(2);
+    }
+
+    long start = System.nanoTime();
+    final String prefix = outputsPrefix;
+    List<LogAnalysis> analyses =
+        logs.parallelStream()
+            .map(
+                log -> {
+                  var analysis = new LogAnalysis(log, prefix);
+                  try {
+                    analysis.run();
+                  } catch (IOException | RuntimeException e) {
+                    analysis.error = e.toString();
+                  }
+                  return analysis;
+                })
+            .toList();
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    long bytes = 0;
+    for (LogAnalysis analysis : analyses) {
+      bytes += analysis.bytes;
+      if (analysis.error != null) {
+        System.err.println(analysis.log + ": " + analysis.error);
+      }
+    }
+    Path csv = out.resolveSibling(out.getFileName() + ".csv");
+    Path json = out.resolveSibling(out.getFileName() + ".json");
+    writeCsv(csv, analyses);
+    writeJson(json, analyses);
+    System.out.printf(
+        "Analyzed %d logs (%.1f MB) in %.2f s, wrote %s and %s%n",
+        analyses.size(), bytes / 1e6, seconds, csv, json);
+  }
+
+  private static void addLogs(Path path, List<Path> logs) throws IOException {
+    if (!Files.isDirectory(path)) {
+      logs.add(path);
+      return;
+    }
+    try (Stream<Path> files = Files.list(path)) {
+      files.filter(file -> file.toString().endsWith(".wpilog")).sorted().forEach(logs::add);
+    }
+  }
+
+  /** Metrics accumulated while the state machine was in one state. */
+  private static final class StateMetrics {
+    double seconds = 0.0;
+    double ampSeconds = 0.0;
+    double maxCurrent = 0.0;
+    final Times spinUps = new Times();
+    int shots = 0;
+    final Times recoveries = new Times();
+    double steadySeconds = 0.0;
+    double steadyErrorSeconds = 0.0;
+    double steadySquaredErrorSeconds = 0.0;
+  }
+
+  private static final class Times {
+    int count = 0;
+    double sum = 0.0;
+    double max = 0.0;
+
+    void add(double time) {
+      count++;
+      sum += time;
+      max = Math.max(max, time);
+    }
+
+    double mean() {
+      return count == 0 ? 0.0 : sum / count;
+    }
+  }
+
+  /** A single pass over one log. */
+  private static final class LogAnalysis {
+    final Path log;
+    final String outputsPrefix;
+    long bytes = 0;
+    String error = null;
+    final Map<String, StateMetrics> states = new LinkedHashMap<>();
+
+    private byte[] kinds = new byte[256];
+
+    // latest values
+    private boolean hasMotors = false;
+    private double velocity = 0.0;
+    private double current = 0.0;
+    private double setpoint = 0.0;
+    private byte[] stateBytes = new byte[0];
+    private StateMetrics state;
+
+    // per loop tracking
+    private long loopTimestamp = -1;
+    private double lastSetpoint = 0.0;
+    private boolean settled = false;
+    private double spinUpStart = Double.NaN;
+    private StateMetrics spinUpState = null;
+    private final ShotRecovery shotRecovery = new ShotRecovery();
+    private StateMetrics shotState = null;
+
+    LogAnalysis(Path log, String outputsPrefix) {
+      this.log = log;
+      this.outputsPrefix = outputsPrefix;
+      this.state = metricsFor(NO_STATE);
+    }
+
+    void run() throws IOException {
+      try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+        bytes = channel.size();
+        if (bytes > Integer.MAX_VALUE) {
+          throw new IOException("logs over 2 GB are not supported");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        parse(buffer);
+      }
+    }
+
+    private void parse(MappedByteBuffer buffer) throws IOException {
+      int limit = buffer.limit();
+      if (limit < 12) {
+        throw new IOException("not a WPILOG file");
+      }
+      for (int i = 0; i < MAGIC.length; i++) {
+        if (buffer.get(i) != MAGIC[i]) {
+          throw new IOException("not a WPILOG file");
+        }
+      }
+      int position = MAGIC.length + 2; // skip the version
+      position += 4 + buffer.getInt(position); // skip the extra header
+
+      while (position < limit) {
+        int header = buffer.get(position++) & 0xff;
+        int idLength = (header & 0x3) + 1;
+        int sizeLength = ((header >> 2) & 0x3) + 1;
+        int timestampLength = ((header >> 4) & 0x7) + 1;
+        if (position + idLength + sizeLength + timestampLength > limit) {
+          break; // truncated, e.g. by a brownout
+        }
+        int entry = (int) readInt(buffer, position, idLength);
+        position += idLength;
+        int size = (int) readInt(buffer, position, sizeLength);
+        position += sizeLength;
+        long timestamp = readInt(buffer, position, timestampLength);
+        position += timestampLength;
+        if (size < 0 || position + size > limit) {
+          break;
+        }
+
+        if (entry == 0) {
+          control(buffer, position, size);
+        } else if (entry < kinds.length && kinds[entry] != KIND_NONE) {
+          if (timestamp != loopTimestamp) {
+            endLoop(timestamp);
+          }
+          data(kinds[entry], buffer, position, size);
+        }
+        position += size;
+      }
+      endLoop(-1);
+    }
+
+    private void control(MappedByteBuffer buffer, int position, int size) {
+      // only start records matter; finish and metadata records are skipped
+      if (size < 17 || buffer.get(position) != 0) {
+        return;
+      }
+      int entry = buffer.getInt(position + 1);
+      int nameLength = buffer.getInt(position + 5);
+      String name = readString(buffer, position + 9, nameLength);
+      int typeLength = buffer.getInt(position + 9 + nameLength);
+      String type = readString(buffer, position + 13 + nameLength, typeLength);
+
+      byte kind = KIND_NONE;
+      if (name.equals(MOTORS_NAME) && type.equals(MOTORS_TYPE)) {
+        kind = KIND_MOTORS;
+      } else if (name.startsWith(outputsPrefix)
+          && name.endsWith(SETPOINT_SUFFIX)
+          && type.equals("double")) {
+        kind = KIND_SETPOINT;
+      } else if (name.startsWith(outputsPrefix)
+          && name.endsWith(STATE_SUFFIX)
+          && type.equals("string")) {
+        kind = KIND_STATE;
+      }
+      if (entry >= kinds.length) {
+        kinds = Arrays.copyOf(kinds, Math.max(entry + 1, kinds.length * 2));
+      }
+      kinds[entry] = kind;
+    }
+
+    private void data(byte kind, MappedByteBuffer buffer, int position, int size) {
+      switch (kind) {
+        case KIND_MOTORS -> {
+          if (size >= MOTORS_SIZE) {
+            hasMotors = true;
+            velocity = buffer.getDouble(position + LEADER_VELOCITY_OFFSET);
+            current =
+                buffer.getDouble(position + LEADER_CURRENT_OFFSET)
+                    + buffer.getDouble(position + FOLLOWER_CURRENT_OFFSET);
+          }
+        }
+        case KIND_SETPOINT -> {
+          if (size == 8) {
+            setpoint = buffer.getDouble(position);
+          }
+        }
+        case KIND_STATE -> {
+          // the state is logged every loop but rarely changes, so compare bytes before decoding
+          if (!sameBytes(buffer, position, size, stateBytes)) {
+            stateBytes = new byte[size];
+            buffer.get(position, stateBytes);
+            state = metricsFor(new String(stateBytes, StandardCharsets.UTF_8));
+          }
+        }
+        default -> {}
+      }
+    }
+
+    /** Accounts the loop that just ended, with the latest value of every signal. */
+    private void endLoop(long nextTimestamp) {
+      if (loopTimestamp >= 0 && hasMotors) {
+        double time = loopTimestamp / 1e6;
+        double dt = nextTimestamp > loopTimestamp ? (nextTimestamp - loopTimestamp) / 1e6 : 0.0;
+        account(time, dt);
+      }
+      loopTimestamp = nextTimestamp;
+    }
+
+    private void account(double time, double dt) {
+      state.seconds += dt;
+      state.ampSeconds += current * dt;
+      state.maxCurrent = Math.max(state.maxCurrent, current);
+
+      double tolerance = Configs.atSpeedTolerance(setpoint);
+      boolean atSpeed = setpoint != 0.0 && Math.abs(velocity - setpoint) <= tolerance;
+
+      boolean newSetpoint = Math.abs(setpoint - lastSetpoint) > tolerance || setpoint <= 0.0;
+      if (newSetpoint) {
+        // spin-ups are only counted when speeding up
+        settled = false;
+        spinUpStart = setpoint > lastSetpoint + tolerance ? time : Double.NaN;
+        spinUpState = state;
+      }
+      lastSetpoint = setpoint;
+
+      if (atSpeed && !Double.isNaN(spinUpStart)) {
+        spinUpState.spinUps.add(time - spinUpStart);
+        spinUpStart = Double.NaN;
+      }
+      if (atSpeed && Double.isNaN(spinUpStart)) {
+        settled = true;
+      }
+
+      // the same detector as on the robot, so the same shots are counted. A new setpoint cancels a
+      // recovery; otherwise it only ends when the wheel is back at speed.
+      int shots = shotRecovery.getShotCount();
+      boolean wasRecovering = shotRecovery.isRecovering();
+      shotRecovery.update(time, setpoint, velocity, current);
+      if (shotRecovery.getShotCount() > shots) {
+        shotState = state;
+        state.shots++;
+      } else if (wasRecovering && !shotRecovery.isRecovering() && !newSetpoint) {
+        shotState.recoveries.add(shotRecovery.getLastRecoveryTime());
+      }
+
+      if (settled && !shotRecovery.isRecovering()) {
+        double error = velocity - setpoint;
+        state.steadySeconds += dt;
+        state.steadyErrorSeconds += Math.abs(error) * dt;
+        state.steadySquaredErrorSeconds += error * error * dt;
+      }
+    }
+
+    private StateMetrics metricsFor(String name) {
+      return states.computeIfAbsent(name, key -> new StateMetrics());
+    }
+  }
+
+  private static long readInt(MappedByteBuffer buffer, int position, int length) {
+    long value = 0;
+    for (int i = 0; i < length; i++) {
+      value |= (long) (buffer.get(position + i) & 0xff) << (8 * i);
+    }
+    return value;
+  }
+
+  private static String readString(MappedByteBuffer buffer, int position, int length) {
+    byte[] bytes = new byte[length];
+    buffer.get(position, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static boolean sameBytes(MappedByteBuffer buffer, int position, int size, byte[] bytes) {
+    if (size != bytes.length) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (buffer.get(position + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void writeCsv(Path path, List<LogAnalysis> analyses) throws IOException {
+    try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path))) {
+      writer.println(
+          "log,state,seconds,meanCurrentA,maxCurrentA,spinUps,meanSpinUpS,maxSpinUpS,"
+              + "shots,meanRecoveryS,maxRecoveryS,steadySeconds,meanAbsErrorRps,rmsErrorRps");
+      for (LogAnalysis analysis : analyses) {
+        for (var entry : analysis.states.entrySet()) {
+          StateMetrics metrics = entry.getValue();
+          if (metrics.seconds == 0.0) {
+            continue;
+          }
+          writer.println(
+              String.format(
+                  Locale.ROOT,
+                  "%s,%s,%.3f,%.2f,%.2f,%d,%.3f,%.3f,%d,%.3f,%.3f,%.3f,%.4f,%.4f",
+                  analysis.log.getFileName(),
+                  entry.getKey(),
+                  metrics.seconds,
+                  metrics.ampSeconds / metrics.seconds,
+                  metrics.maxCurrent,
+                  metrics.spinUps.count,
+                  metrics.spinUps.mean(),
+                  metrics.spinUps.max,
+                  metrics.shots,
+                  metrics.recoveries.mean(),
+                  metrics.recoveries.max,
+                  metrics.steadySeconds,
+                  meanAbsError(metrics),
+                  rmsError(metrics)));
+        }
+      }
+    }
+  }
+
+  private static void writeJson(Path path, List<LogAnalysis> analyses) throws IOException {
+    try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path))) {
+      writer.println("[");
+      for (int i = 0; i < analyses.size(); i++) {
+        LogAnalysis analysis = analyses.get(i);
+        writer.print("  {\"log\": " + quote(analysis.log.getFileName().toString()));
+        if (analysis.error != null) {
+          writer.print(", \"error\": " + quote(analysis.error));
+        }
+        writer.println(", \"states\": {");
+        List<String> lines = new ArrayList<>();
+        for (var entry : analysis.states.entrySet()) {
+          StateMetrics metrics = entry.getValue();
+          if (metrics.seconds == 0.0) {
+            continue;
+          }
+          lines.add(
+              String.format(
+                  Locale.ROOT,
+                  "    %s: {\"seconds\": %.3f, \"meanCurrentA\": %.2f, \"maxCurrentA\": %.2f, "
+                      + "\"spinUp\": %s, \"shots\": %d, \"recovery\": %s, \"steadySeconds\": %.3f, "
+                      + "\"meanAbsErrorRps\": %.4f, \"rmsErrorRps\": %.4f}",
+                  quote(entry.getKey()),
+                  metrics.seconds,
+                  metrics.ampSeconds / metrics.seconds,
+                  metrics.maxCurrent,
+                  timesJson(metrics.spinUps),
+                  metrics.shots,
+                  timesJson(metrics.recoveries),
+                  metrics.steadySeconds,
+                  meanAbsError(metrics),
+                  rmsError(metrics)));
+        }
+        writer.println(String.join(",\n", lines));
+        writer.println(i == analyses.size() - 1 ? "  }}" : "  }},");
+      }
+      writer.println("]");
+    }
+  }
+
+  private static String timesJson(Times times) {
+    return String.format(
+        Locale.ROOT,
+        "{\"count\": %d, \"meanS\": %.3f, \"maxS\": %.3f}",
+        times.count,
+        times.mean(),
+        times.max);
+  }
+
+  private static double meanAbsError(StateMetrics metrics) {
+    return metrics.steadySeconds == 0.0 ? 0.0 : metrics.steadyErrorSeconds / metrics.steadySeconds;
+  }
+
+  private static double rmsError(StateMetrics metrics) {
+    return metrics.steadySeconds == 0.0
+        ? 0.0
+        : Math.sqrt(metrics.steadySquaredErrorSeconds / metrics.steadySeconds);
+  }
+
+  private static String quote(String value) {
+    return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+}
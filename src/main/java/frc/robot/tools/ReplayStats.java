@@ -0,0 +1,72 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.tools;
+
+import frc.robot.utils.RollingHistogram;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Loop timing of a log replay. The robot records every loop while replaying and prints a single
+ * summary line when the replay finishes, which {@link BatchReplay} picks out of the replay's
+ * output.
+ */
+public class ReplayStats {
+  /** Start of the summary line. The rest of the line is space separated "key=value" pairs. */
+  public static final String PREFIX = "[ReplayStats]";
+
+  private long[] loopNanos = new long[4096];
+  private int count = 0;
+
+  /** Records the duration of one loop. */
+  public void record(long nanos) {
+    if (count == loopNanos.length) {
+      loopNanos = Arrays.copyOf(loopNanos, count * 2);
+    }
+    loopNanos[count++] = nanos;
+  }
+
+  /** Prints the summary line. */
+  public void print() {
+    long[] sorted = Arrays.copyOf(loopNanos, count);
+    Arrays.sort(sorted);
+    long total = 0;
+    for (long nanos : sorted) {
+      total += nanos;
+    }
+    // parsed back with Double.parseDouble, so the decimal separator must not depend on the locale
+    System.out.printf(
+        Locale.ROOT,
+        "%s loops=%d loopSeconds=%.3f meanMs=%.4f p50Ms=%.4f p99Ms=%.4f maxMs=%.4f%n",
+        PREFIX,
+        count,
+        total / 1e9,
+        count == 0 ? 0.0 : total / 1e6 / count,
+        RollingHistogram.nearestRank(sorted, count, 0.5) / 1e6,
+        RollingHistogram.nearestRank(sorted, count, 0.99) / 1e6,
+        RollingHistogram.nearestRank(sorted, count, 1) / 1e6);
+    System.out.flush();
+  }
+
+  /**
+   * Parses a summary line.
+   *
+   * @param line a line of replay output.
+   * @return the summary's values by key, or null if the line is not a summary line.
+   */
+  public static Map<String, String> parse(String line) {
+    if (!line.startsWith(PREFIX)) {
+      return null;
+    }
+    Map<String, String> values = new LinkedHashMap<>();
+    for (String pair : line.substring(PREFIX.length()).trim().split("\\s+")) {
+      int separator = pair.indexOf('=');
+      if (separator > 0) {
+        values.put(pair.substring(0, separator), pair.substring(separator + 1));
+      }
+    }
+    return values;
+  }
+}
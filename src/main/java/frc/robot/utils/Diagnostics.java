@@ -0,0 +1,185 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Console diagnostics that are safe to call from the control path. Call sites log a number through
+ * a {@link Channel}, which rate limits and deduplicates it and then writes it into a preallocated
+ * lock-free {@link DiagnosticsBuffer}. A background daemon thread formats and prints the messages,
+ * so the caller never builds strings or blocks on stdout. If the buffer fills up, messages are
+ * dropped and counted instead of blocking.
+ *
+ * <p>Infrequent text, such as startup reports, can be printed by the same thread with {@link
+ * #message(String)}, which allocates and so should stay off the control path.
+ */
+public final class Diagnostics {
+  private static final int CAPACITY = 1024;
+  private static final long DRAIN_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+  private static final double DEFAULT_MIN_INTERVAL_SECONDS = 0.5;
+  /** How often a value that keeps repeating is summarized. */
+  static final long REPEAT_SUMMARY_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  private static final List<Channel> channels = new ArrayList<>();
+  private static final DiagnosticsBuffer buffer = new DiagnosticsBuffer(CAPACITY);
+  private static final Queue<String> textMessages = new ConcurrentLinkedQueue<>();
+
+  static {
+    Thread drainer = new Thread(Diagnostics::drainForever, "Diagnostics");
+    drainer.setDaemon(true);
+    drainer.start();
+  }
+
+  private Diagnostics() {}
+
+  /**
+   * Creates a channel rate limited to one message every half second.
+   *
+   * @param message the text printed before each value.
+   * @return the channel. Should be created once, e.g. as a static field, not per call.
+   */
+  public static Channel channel(String message) {
+    return channel(message, DEFAULT_MIN_INTERVAL_SECONDS);
+  }
+
+  /**
+   * Creates a channel.
+   *
+   * @param message the text printed before each value.
+   * @param minIntervalSeconds the minimum time between two printed messages with different values.
+   * @return the channel. Should be created once, e.g. as a static field, not per call.
+   */
+  public static synchronized Channel channel(String message, double minIntervalSeconds) {
+    var channel =
+        new Channel(
+            channels.size(),
+            message,
+            (long) (minIntervalSeconds * 1e9),
+            buffer,
+            System::nanoTime);
+    channels.add(channel);
+    return channel;
+  }
+
+  /**
+   * Prints a line of text from the diagnostics thread. Never blocks, but allocates, so it is only
+   * for messages that are not logged every loop.
+   *
+   * @param text the line to print.
+   */
+  public static void message(String text) {
+    textMessages.add(text);
+  }
+
+  /**
+   * A single call site. A channel keeps its own rate limiting state, so it should only be logged to
+   * from one thread.
+   */
+  public static final class Channel {
+    private final int id;
+    private final String message;
+    private final long minIntervalNanos;
+    private final DiagnosticsBuffer buffer;
+    private final LongSupplier clock;
+    private boolean hasLast = false;
+    private double lastValue = 0.0;
+    private long lastEmitNanos = 0;
+    private int repeats = 0;
+    private int suppressed = 0;
+
+    /**
+     * Creates a channel that writes into the given buffer. Only tests create channels directly;
+     * everything else goes through {@link Diagnostics#channel(String, double)}.
+     *
+     * @param clock the time, in nanoseconds.
+     */
+    Channel(
+        int id,
+        String message,
+        long minIntervalNanos,
+        DiagnosticsBuffer buffer,
+        LongSupplier clock) {
+      this.id = id;
+      this.message = message;
+      this.minIntervalNanos = minIntervalNanos;
+      this.buffer = buffer;
+      this.clock = clock;
+    }
+
+    /**
+     * Logs a value. Consecutive identical values are only counted, and summarized as "message
+     * repeated N times" every few seconds; different values logged faster than the channel's
+     * minimum interval are counted and dropped. Never blocks and never allocates.
+     *
+     * @param value the value.
+     */
+    public void log(double value) {
+      long now = clock.getAsLong();
+      if (hasLast && value == lastValue) {
+        repeats++;
+        if (now - lastEmitNanos >= REPEAT_SUMMARY_NANOS) {
+          buffer.offer(id, value, repeats, 0, true);
+          repeats = 0;
+          lastEmitNanos = now;
+        }
+        return;
+      }
+      if (hasLast && now - lastEmitNanos < minIntervalNanos) {
+        suppressed++;
+        return;
+      }
+      buffer.offer(id, value, repeats, suppressed, false);
+      hasLast = true;
+      lastValue = value;
+      lastEmitNanos = now;
+      repeats = 0;
+      suppressed = 0;
+    }
+  }
+
+  private static void drainForever() {
+    long reportedDrops = 0;
+    while (true) {
+      LockSupport.parkNanos(DRAIN_PERIOD_NANOS);
+      buffer.drain(Diagnostics::print);
+      String text;
+      while ((text = textMessages.poll()) != null) {
+        System.out.println(text);
+      }
+      long drops = buffer.getDroppedCount();
+      if (drops != reportedDrops) {
+        System.out.println("[Diagnostics] " + (drops - reportedDrops) + " messages dropped");
+        reportedDrops = drops;
+      }
+    }
+  }
+
+  private static void print(
+      int channelId, double value, int repeats, int suppressed, boolean summary) {
+    Channel channel;
+    synchronized (Diagnostics.class) {
+      channel = channels.get(channelId);
+    }
+    if (summary) {
+      System.out.println(
+          channel.message + " " + value + " (message repeated " + repeats + " times)");
+      return;
+    }
+    if (repeats > 0) {
+      System.out.println(channel.message + " (previous message repeated " + repeats + " times)");
+    }
+    if (suppressed > 0) {
+      System.out.println(
+          channel.message + " " + value + " (" + suppressed + " messages rate limited)");
+    } else {
+      System.out.println(channel.message + " " + value);
+    }
+  }
+}
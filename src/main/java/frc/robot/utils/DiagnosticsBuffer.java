@@ -0,0 +1,121 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free multi-producer/single-consumer ring buffer of {@link Diagnostics} messages. Any thread
+ * may call {@link #offer(int, double, int, int, boolean)}, and one thread calls {@link
+ * #drain(Consumer)}. Messages are stored in preallocated primitive arrays, so neither side
+ * allocates. If the buffer fills up, new messages are dropped; see {@link #getDroppedCount()}.
+ */
+final class DiagnosticsBuffer {
+  /** Receives drained messages. */
+  interface Consumer {
+    void accept(int channel, double value, int repeats, int suppressed, boolean summary);
+  }
+
+  private final int capacity;
+  private final int mask;
+
+  // each slot's sequence number says whether it is free for the producer claiming position p
+  // (sequence == p) or ready for the consumer (p + 1)
+  private final AtomicLongArray sequences;
+  private final int[] channels;
+  private final double[] values;
+  private final int[] repeats;
+  private final int[] suppressed;
+  private final boolean[] summaries;
+  private final AtomicLong tail = new AtomicLong();
+  // only touched by the consumer
+  private long head = 0;
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  /**
+   * Creates a new buffer.
+   *
+   * @param capacity the maximum number of messages held. Must be a power of two.
+   */
+  DiagnosticsBuffer(int capacity) {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+    }
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.sequences = new AtomicLongArray(capacity);
+    this.channels = new int[capacity];
+    this.values = new double[capacity];
+    this.repeats = new int[capacity];
+    this.suppressed = new int[capacity];
+    this.summaries = new boolean[capacity];
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Adds a message. Safe to call from any thread.
+   *
+   * @return false if the buffer was full and the message was dropped.
+   */
+  boolean offer(int channel, double value, int repeatCount, int suppressedCount, boolean summary) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) (position & mask);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          break;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        // full
+        droppedCount.incrementAndGet();
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+    int index = (int) (position & mask);
+    channels[index] = channel;
+    values[index] = value;
+    repeats[index] = repeatCount;
+    suppressed[index] = suppressedCount;
+    summaries[index] = summary;
+    // publish the slot only after it is fully written
+    sequences.lazySet(index, position + 1);
+    return true;
+  }
+
+  /**
+   * Hands every published message, oldest first, to the consumer. Must only be called from the
+   * consumer thread. Messages from one producer are drained in the order it offered them.
+   *
+   * @param consumer receives the messages.
+   * @return the number of messages drained.
+   */
+  int drain(Consumer consumer) {
+    int count = 0;
+    while (true) {
+      int index = (int) (head & mask);
+      if (sequences.get(index) != head + 1) {
+        return count;
+      }
+      consumer.accept(
+          channels[index], values[index], repeats[index], suppressed[index], summaries[index]);
+      // release the slot for the producer that wraps around to it
+      sequences.lazySet(index, head + capacity);
+      head++;
+      count++;
+    }
+  }
+
+  /**
+   * @return the total number of messages dropped because the buffer was full.
+   */
+  long getDroppedCount() {
+    return droppedCount.get();
+  }
+}
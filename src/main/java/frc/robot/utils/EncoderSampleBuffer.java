@@ -0,0 +1,101 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer of timestamped encoder samples. One thread
+ * (e.g. a high-rate sampling thread) calls {@link #offer(double, double, double)} and another (e.g.
+ * the main robot loop) calls {@link #drain(double[], double[], double[])}. Samples are stored in
+ * preallocated primitive arrays, so neither side allocates.
+ *
+ * <p>If the consumer falls behind and the buffer fills up, new samples are dropped rather than
+ * overwriting ones the consumer may be reading; see {@link #getDroppedCount()}.
+ */
+public class EncoderSampleBuffer {
+  private final int mask;
+  private final double[] timestamps;
+  private final double[] positions;
+  private final double[] velocities;
+
+  // next index to write, only advanced by the producer
+  private final AtomicLong tail = new AtomicLong();
+  // next index to read, only advanced by the consumer
+  private final AtomicLong head = new AtomicLong();
+  private volatile long droppedCount = 0;
+
+  /**
+   * Creates a new buffer.
+   *
+   * @param capacity the maximum number of samples held. Rounded up to a power of two.
+   */
+  public EncoderSampleBuffer(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.mask = size - 1;
+    this.timestamps = new double[size];
+    this.positions = new double[size];
+    this.velocities = new double[size];
+  }
+
+  /**
+   * Adds a sample. Must only be called from the producer thread.
+   *
+   * @param timestamp the time the sample was taken, in seconds.
+   * @param position the position.
+   * @param velocity the velocity.
+   * @return false if the buffer was full and the sample was dropped.
+   */
+  public boolean offer(double timestamp, double position, double velocity) {
+    long t = tail.get();
+    if (t - head.get() > mask) {
+      droppedCount++;
+      return false;
+    }
+    int index = (int) (t & mask);
+    timestamps[index] = timestamp;
+    positions[index] = position;
+    velocities[index] = velocity;
+    // publish the slot only after it is fully written
+    tail.lazySet(t + 1);
+    return true;
+  }
+
+  /**
+   * Moves all available samples, oldest first, into the given arrays. Must only be called from the
+   * consumer thread.
+   *
+   * @param timestampsOut receives the timestamps.
+   * @param positionsOut receives the positions.
+   * @param velocitiesOut receives the velocities.
+   * @return the number of samples copied, at most the length of the shortest array.
+   */
+  public int drain(double[] timestampsOut, double[] positionsOut, double[] velocitiesOut) {
+    long h = head.get();
+    int limit = Math.min(timestampsOut.length, Math.min(positionsOut.length, velocitiesOut.length));
+    int count = (int) Math.min(tail.get() - h, limit);
+    for (int i = 0; i < count; i++) {
+      int index = (int) ((h + i) & mask);
+      timestampsOut[i] = timestamps[index];
+      positionsOut[i] = positions[index];
+      velocitiesOut[i] = velocities[index];
+    }
+    // release the slots only after they are fully read
+    head.lazySet(h + count);
+    return count;
+  }
+
+  /**
+   * @return the number of samples the buffer can hold.
+   */
+  public int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * @return the total number of samples dropped because the buffer was full.
+   */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+}
@@ -0,0 +1,266 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A lookup table from one key (e.g. distance) to one or more values (e.g. flywheel RPM, hood
+ * angle), interpolated between rows. Rows are stored as sorted primitive arrays and looked up with
+ * a binary search, except that the segment of the last lookup is cached, so repeated nearby lookups
+ * such as a slowly changing distance take constant time. Keys outside the table are clamped to its
+ * ends. Lookups never allocate.
+ *
+ * <p>The lookup cache is not thread safe, so a table should only be used from one thread.
+ */
+public class InterpolatingTable {
+  public enum Interpolation {
+    /** Straight lines between rows. */
+    LINEAR,
+    /**
+     * A monotone cubic spline (Fritsch-Carlson) through the rows. Smooth, and never overshoots
+     * between rows, so a monotone table stays monotone.
+     */
+    SPLINE
+  }
+
+  private final double[] keys;
+  // values and spline slopes by column, then row
+  private final double[][] values;
+  private final double[][] slopes;
+  private final String[] columnNames;
+  private final Interpolation interpolation;
+  private int segment = 0;
+
+  /**
+   * Creates a table.
+   *
+   * @param keys the keys of the rows, strictly increasing.
+   * @param values the values of each column, indexed by column then row.
+   * @param columnNames the name of each column.
+   * @param interpolation how to interpolate between rows.
+   */
+  public InterpolatingTable(
+      double[] keys, double[][] values, String[] columnNames, Interpolation interpolation) {
+    if (keys.length < 2) {
+      throw new IllegalArgumentException("An interpolating table needs at least two rows");
+    }
+    if (values.length != columnNames.length) {
+      throw new IllegalArgumentException("Every column needs a name");
+    }
+    for (int i = 1; i < keys.length; i++) {
+      if (!(keys[i] > keys[i - 1])) {
+        throw new IllegalArgumentException(
+            "Interpolating table keys must be strictly increasing, got "
+                + keys[i]
+                + " after "
+                + keys[i - 1]);
+      }
+    }
+    for (double[] column : values) {
+      if (column.length != keys.length) {
+        throw new IllegalArgumentException("Every column needs a value for every row");
+      }
+    }
+    this.keys = keys.clone();
+    this.values = new double[values.length][];
+    this.slopes = new double[values.length][];
+    for (int c = 0; c < values.length; c++) {
+      this.values[c] = values[c].clone();
+      this.slopes[c] =
+          interpolation == Interpolation.SPLINE ? monotoneSlopes(keys, values[c]) : null;
+    }
+    this.columnNames = columnNames.clone();
+    this.interpolation = interpolation;
+  }
+
+  /**
+   * Loads a table from a CSV file. The first line is the header, with the key's name followed by
+   * each column's name. Blank lines and lines starting with "#" are skipped. Rows may be in any
+   * order.
+   *
+   * @param path the file.
+   * @param interpolation how to interpolate between rows.
+   * @return the table.
+   * @throws IOException if the file cannot be read.
+   */
+  public static InterpolatingTable fromCsv(Path path, Interpolation interpolation)
+      throws IOException {
+    String[] header = null;
+    List<double[]> rows = new ArrayList<>();
+    for (String line : Files.readAllLines(path)) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split(",");
+      if (header == null) {
+        header = fields;
+        continue;
+      }
+      if (fields.length != header.length) {
+        throw new IOException(path + ": expected " + header.length + " fields in \"" + line + "\"");
+      }
+      double[] row = new double[fields.length];
+      for (int i = 0; i < fields.length; i++) {
+        try {
+          row[i] = Double.parseDouble(fields[i].trim());
+        } catch (NumberFormatException e) {
+          throw new IOException(path + ": not a number in \"" + line + "\"", e);
+        }
+      }
+      rows.add(row);
+    }
+    if (header == null) {
+      throw new IOException(path + " is empty");
+    }
+
+    rows.sort((a, b) -> Double.compare(a[0], b[0]));
+    double[] keys = new double[rows.size()];
+    double[][] values = new double[header.length - 1][rows.size()];
+    for (int r = 0; r < rows.size(); r++) {
+      keys[r] = rows.get(r)[0];
+      for (int c = 0; c < values.length; c++) {
+        values[c][r] = rows.get(r)[c + 1];
+      }
+    }
+    String[] columnNames = new String[header.length - 1];
+    for (int c = 0; c < columnNames.length; c++) {
+      columnNames[c] = header[c + 1].trim();
+    }
+    return new InterpolatingTable(keys, values, columnNames, interpolation);
+  }
+
+  /**
+   * @param name a column's name.
+   * @return the column's index.
+   */
+  public int getColumn(String name) {
+    for (int c = 0; c < columnNames.length; c++) {
+      if (columnNames[c].equals(name)) {
+        return c;
+      }
+    }
+    throw new IllegalArgumentException("No column named " + name);
+  }
+
+  /** Looks up the first column. */
+  public double get(double key) {
+    return get(key, 0);
+  }
+
+  /**
+   * Looks up one column.
+   *
+   * @param key the key.
+   * @param column the column's index.
+   * @return the interpolated value, or NaN if the key is NaN.
+   */
+  public double get(double key, int column) {
+    if (Double.isNaN(key)) {
+      return Double.NaN;
+    }
+    if (key <= keys[0]) {
+      return values[column][0];
+    }
+    if (key >= keys[keys.length - 1]) {
+      return values[column][keys.length - 1];
+    }
+    return interpolate(findSegment(key), key, column);
+  }
+
+  /**
+   * Looks up every column.
+   *
+   * @param key the key.
+   * @param out filled with the interpolated value of each column, or NaN if the key is NaN.
+   */
+  public void getAll(double key, double[] out) {
+    if (Double.isNaN(key)) {
+      Arrays.fill(out, 0, values.length, Double.NaN);
+      return;
+    }
+    if (key <= keys[0] || key >= keys[keys.length - 1]) {
+      int row = key <= keys[0] ? 0 : keys.length - 1;
+      for (int c = 0; c < values.length; c++) {
+        out[c] = values[c][row];
+      }
+      return;
+    }
+    int i = findSegment(key);
+    for (int c = 0; c < values.length; c++) {
+      out[c] = interpolate(i, key, c);
+    }
+  }
+
+  /** The index of the row starting the segment containing the key, which must be in the table. */
+  private int findSegment(double key) {
+    int i = segment;
+    if (key >= keys[i] && key < keys[i + 1]) {
+      return i;
+    }
+    // moving into a neighboring segment is the next most common case
+    if (i + 2 < keys.length && key >= keys[i + 1] && key < keys[i + 2]) {
+      return segment = i + 1;
+    }
+    if (i > 0 && key >= keys[i - 1] && key < keys[i]) {
+      return segment = i - 1;
+    }
+    int index = Arrays.binarySearch(keys, key);
+    // an exact match starts its segment; otherwise the insertion point follows it
+    segment = index >= 0 ? index : -index - 2;
+    return segment;
+  }
+
+  private double interpolate(int i, double key, int column) {
+    double[] y = values[column];
+    double h = keys[i + 1] - keys[i];
+    double t = (key - keys[i]) / h;
+    if (interpolation == Interpolation.LINEAR) {
+      return y[i] + t * (y[i + 1] - y[i]);
+    }
+    double[] m = slopes[column];
+    double t2 = t * t;
+    double t3 = t2 * t;
+    return (2 * t3 - 3 * t2 + 1) * y[i]
+        + (t3 - 2 * t2 + t) * h * m[i]
+        + (-2 * t3 + 3 * t2) * y[i + 1]
+        + (t3 - t2) * h * m[i + 1];
+  }
+
+  /** Fritsch-Carlson tangents, which keep a cubic Hermite spline monotone between rows. */
+  private static double[] monotoneSlopes(double[] x, double[] y) {
+    int n = x.length;
+    double[] secants = new double[n - 1];
+    for (int i = 0; i < n - 1; i++) {
+      secants[i] = (y[i + 1] - y[i]) / (x[i + 1] - x[i]);
+    }
+    double[] m = new double[n];
+    m[0] = secants[0];
+    m[n - 1] = secants[n - 2];
+    for (int i = 1; i < n - 1; i++) {
+      m[i] = secants[i - 1] * secants[i] <= 0 ? 0 : (secants[i - 1] + secants[i]) / 2;
+    }
+    for (int i = 0; i < n - 1; i++) {
+      if (secants[i] == 0) {
+        m[i] = 0;
+        m[i + 1] = 0;
+        continue;
+      }
+      double a = m[i] / secants[i];
+      double b = m[i + 1] / secants[i];
+      double s = a * a + b * b;
+      if (s > 9) {
+        double tau = 3 / Math.sqrt(s);
+        m[i] = tau * a * secants[i];
+        m[i + 1] = tau * b * secants[i];
+      }
+    }
+    return m;
+  }
+}
@@ -8,8 +8,6 @@
 package frc.robot.utils;
 
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.DoubleSupplier;
 import org.littletonrobotics.junction.networktables.LoggedNetworkNumber;
@@ -26,7 +24,11 @@ public class LoggedTunableNumber implements DoubleSupplier {
   private boolean hasDefault = false;
   private double defaultValue;
   private LoggedNetworkNumber dashboardNumber;
-  private Map<Integer, Double> lastHasChangedValues = new HashMap<>();
+  private final int registryIndex;
+
+  // caller ids and the last value each caller saw, for hasChanged
+  private int[] lastHasChangedIds = new int[0];
+  private double[] lastHasChangedValues = new double[0];
 
   /**
    * Create a new LoggedTunableNumber
@@ -35,6 +37,7 @@ public class LoggedTunableNumber implements DoubleSupplier {
    */
   public LoggedTunableNumber(String dashboardKey) {
     this.key = tableKey + "/" + dashboardKey;
+    this.registryIndex = TunableRegistry.getInstance().register(this);
   }
 
   /**
@@ -60,6 +63,7 @@ public class LoggedTunableNumber implements DoubleSupplier {
       if (true) {
         dashboardNumber = new LoggedNetworkNumber(key, defaultValue);
       }
+      TunableRegistry.getInstance().refresh(registryIndex);
     }
   }
 
@@ -86,17 +90,43 @@ public class LoggedTunableNumber implements DoubleSupplier {
    */
   public boolean hasChanged(int id) {
     double currentValue = get();
-    Double lastValue = lastHasChangedValues.get(id);
-    if (lastValue == null || currentValue != lastValue) {
-      lastHasChangedValues.put(id, currentValue);
-      return true;
+    for (int i = 0; i < lastHasChangedIds.length; i++) {
+      if (lastHasChangedIds[i] == id) {
+        if (currentValue != lastHasChangedValues[i]) {
+          lastHasChangedValues[i] = currentValue;
+          return true;
+        }
+        return false;
+      }
     }
 
-    return false;
+    // first check from this caller
+    lastHasChangedIds = Arrays.copyOf(lastHasChangedIds, lastHasChangedIds.length + 1);
+    lastHasChangedValues = Arrays.copyOf(lastHasChangedValues, lastHasChangedValues.length + 1);
+    lastHasChangedIds[lastHasChangedIds.length - 1] = id;
+    lastHasChangedValues[lastHasChangedValues.length - 1] = currentValue;
+    return true;
+  }
+
+  /**
+   * Runs an action every loop where any of the tunable numbers have changed, through the {@link
+   * TunableRegistry}. Unlike {@link #ifChanged(int, Consumer, LoggedTunableNumber...)}, this only
+   * needs to be called once, and does not allocate when dispatching.
+   *
+   * @param action Callback to run when any of the tunable numbers have changed. Access tunable
+   *     numbers in order inputted in method. The array is reused between calls, so copy values out
+   *     of it rather than keeping it.
+   * @param tunableNumbers All tunable numbers to watch
+   * @return the subscription
+   */
+  public static TunableRegistry.Subscription onChange(
+      Consumer<double[]> action, LoggedTunableNumber... tunableNumbers) {
+    return TunableRegistry.getInstance().subscribe(action, tunableNumbers);
   }
 
   /**
-   * Runs action if any of the tunableNumbers have changed
+   * Runs action if any of the tunableNumbers have changed. Must be called every loop to pick up
+   * changes; prefer {@link #onChange(Consumer, LoggedTunableNumber...)}.
    *
    * @param id Unique identifier for the caller to avoid conflicts when shared between multiple *
    *     objects. Recommended approach is to pass the result of "hashCode()"
@@ -106,8 +136,17 @@ public class LoggedTunableNumber implements DoubleSupplier {
    */
   public static void ifChanged(
       int id, Consumer<double[]> action, LoggedTunableNumber... tunableNumbers) {
-    if (Arrays.stream(tunableNumbers).anyMatch(tunableNumber -> tunableNumber.hasChanged(id))) {
-      action.accept(Arrays.stream(tunableNumbers).mapToDouble(LoggedTunableNumber::get).toArray());
+    // check every number, so that each one's last seen value is updated
+    boolean anyChanged = false;
+    for (LoggedTunableNumber tunableNumber : tunableNumbers) {
+      anyChanged |= tunableNumber.hasChanged(id);
+    }
+    if (anyChanged) {
+      double[] values = new double[tunableNumbers.length];
+      for (int i = 0; i < tunableNumbers.length; i++) {
+        values[i] = tunableNumbers[i].get();
+      }
+      action.accept(values);
     }
   }
 
@@ -116,6 +155,13 @@ public class LoggedTunableNumber implements DoubleSupplier {
     ifChanged(id, values -> action.run(), tunableNumbers);
   }
 
+  /**
+   * @return the index of this number in the {@link TunableRegistry}.
+   */
+  int getRegistryIndex() {
+    return registryIndex;
+  }
+
   @Override
   public double getAsDouble() {
     return get();
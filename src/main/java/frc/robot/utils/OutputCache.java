@@ -0,0 +1,71 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import edu.wpi.first.wpilibj.RobotController;
+import lombok.Getter;
+
+/**
+ * Write-through cache of the last output sent to a motor controller. An output is only worth
+ * sending when its control type, slot, setpoint or arbitrary feedforward changed, or when the
+ * keep-alive period has passed since it was last sent, so that a controller that missed a frame or
+ * rebooted gets the setpoint again. Everything else is suppressed and counted.
+ *
+ * <p>Should be invalidated whenever the controller may have dropped its setpoint, e.g. on enable or
+ * after it was reconfigured.
+ */
+public class OutputCache {
+  private final long keepAliveMicros;
+
+  private boolean valid = false;
+  private Object lastControlType = null;
+  private int lastSlot = 0;
+  private double lastSetpoint = 0.0;
+  private double lastArbFeedforward = 0.0;
+  private long lastSentMicros = 0;
+
+  @Getter private long sentCount = 0;
+  @Getter private long suppressedCount = 0;
+
+  /**
+   * @param keepAliveSeconds the longest time an unchanged output goes without being sent again.
+   */
+  public OutputCache(double keepAliveSeconds) {
+    this.keepAliveMicros = (long) (keepAliveSeconds * 1e6);
+  }
+
+  /**
+   * Checks whether an output needs to be sent, and if so records it as sent.
+   *
+   * @param controlType the control type, e.g. a {@code ControlType} constant. Compared by identity.
+   * @param slot the closed loop slot, or 0 if there is none.
+   * @param setpoint the setpoint.
+   * @param arbFeedforward the arbitrary feedforward, or 0 if there is none.
+   * @return true if the output should be sent.
+   */
+  public boolean shouldSend(Object controlType, int slot, double setpoint, double arbFeedforward) {
+    long now = RobotController.getFPGATime();
+    if (valid
+        && controlType == lastControlType
+        && slot == lastSlot
+        && setpoint == lastSetpoint
+        && arbFeedforward == lastArbFeedforward
+        && now - lastSentMicros < keepAliveMicros) {
+      suppressedCount++;
+      return false;
+    }
+    valid = true;
+    lastControlType = controlType;
+    lastSlot = slot;
+    lastSetpoint = setpoint;
+    lastArbFeedforward = arbFeedforward;
+    lastSentMicros = now;
+    sentCount++;
+    return true;
+  }
+
+  /** Makes the next output be sent, whether or not it changed. */
+  public void invalidate() {
+    valid = false;
+  }
+}
@@ -0,0 +1,101 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size rolling window of samples (e.g. loop times in nanoseconds) that can report
+ * percentiles over the window. All storage is allocated up front, so recording and querying never
+ * allocate.
+ */
+public class RollingHistogram {
+  private final long[] samples;
+  private final long[] sorted;
+  private int next = 0;
+  private int count = 0;
+  private long latest = 0;
+  private boolean sortedValid = false;
+
+  /**
+   * Creates a new histogram.
+   *
+   * @param windowSize the number of most recent samples kept.
+   */
+  public RollingHistogram(int windowSize) {
+    this.samples = new long[windowSize];
+    this.sorted = new long[windowSize];
+  }
+
+  /**
+   * Records a sample, evicting the oldest one if the window is full.
+   *
+   * @param sample the sample.
+   */
+  public void record(long sample) {
+    samples[next] = sample;
+    next = (next + 1) % samples.length;
+    if (count < samples.length) {
+      count++;
+    }
+    latest = sample;
+    sortedValid = false;
+  }
+
+  /**
+   * @return the number of samples currently in the window.
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * @return the most recently recorded sample, or 0 if nothing has been recorded.
+   */
+  public long latest() {
+    return latest;
+  }
+
+  /**
+   * Gets a percentile of the samples in the window using the nearest-rank method.
+   *
+   * @param percentile the percentile, from 0 to 1.
+   * @return the sample at that percentile, or 0 if the window is empty.
+   */
+  public long percentile(double percentile) {
+    sort();
+    return nearestRank(sorted, count, percentile);
+  }
+
+  /**
+   * Gets a percentile of already sorted samples using the nearest-rank method, for tools that
+   * collect all of their samples before reporting.
+   *
+   * @param sorted the samples, in ascending order.
+   * @param count the number of leading samples to use.
+   * @param percentile the percentile, from 0 to 1.
+   * @return the sample at that percentile, or 0 if there are no samples.
+   */
+  public static long nearestRank(long[] sorted, int count, double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(percentile * count) - 1;
+    return sorted[Math.max(0, Math.min(count - 1, index))];
+  }
+
+  /**
+   * @return the largest sample in the window, or 0 if the window is empty.
+   */
+  public long max() {
+    return percentile(1.0);
+  }
+
+  private void sort() {
+    if (!sortedValid) {
+      System.arraycopy(samples, 0, sorted, 0, count);
+      Arrays.sort(sorted, 0, count);
+      sortedValid = true;
+    }
+  }
+}
@@ -0,0 +1,203 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import com.revrobotics.PersistMode;
+import com.revrobotics.REVLibError;
+import com.revrobotics.ResetMode;
+import com.revrobotics.spark.SparkFlex;
+import com.revrobotics.spark.config.SparkFlexConfig;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Applies configuration changes to a SparkFlex on a background thread, so that the blocking {@code
+ * configure} call (which waits for CAN acknowledgements) never runs in the robot loop.
+ *
+ * <p>Changes are submitted as partial configs and merged into one pending config. The applier
+ * waits until no new change has been submitted for {@link #COALESCE_WINDOW_MS}, then sends
+ * everything pending in a single {@code configure} call without resetting safe parameters, retries
+ * on failure, and reads the values back through the submitted verifiers. Status can be polled from
+ * the main thread without blocking.
+ */
+public class SparkConfigApplier {
+  /** How long to wait for further edits before applying, in milliseconds. */
+  public static final long COALESCE_WINDOW_MS = 100;
+
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long RETRY_BACKOFF_MS = 50;
+
+  /** Sends a config to the motor controller. Blocks until it is acknowledged. */
+  interface Configurer {
+    REVLibError configure(SparkFlexConfig config);
+  }
+
+  private final Configurer configurer;
+  private final Future<?> startAfter;
+  private final Object lock = new Object();
+
+  // guarded by lock
+  private SparkFlexConfig pending = new SparkFlexConfig();
+  private final Map<String, BooleanSupplier> verifiers = new LinkedHashMap<>();
+  private long lastSubmitMillis = 0;
+
+  private volatile long submittedGeneration = 0;
+  private volatile long appliedGeneration = 0;
+  private volatile boolean verified = true;
+  private volatile REVLibError lastError = REVLibError.kOk;
+  private volatile int failureCount = 0;
+
+  /**
+   * Creates a new applier and starts its thread.
+   *
+   * @param spark the motor controller to configure.
+   * @param name the name of the applier thread.
+   * @param startAfter the motor controller's startup configuration, e.g. from {@link
+   *     StartupConfigurator#submit}. Changes submitted before it completes are held until then, so
+   *     they are never sent concurrently with it or overwritten by it.
+   */
+  public SparkConfigApplier(SparkFlex spark, String name, Future<?> startAfter) {
+    this(
+        config ->
+            spark.configure(
+                config, ResetMode.kNoResetSafeParameters, PersistMode.kNoPersistParameters),
+        name,
+        startAfter);
+  }
+
+  /**
+   * Creates a new applier that sends configs through the given function, e.g. a fake device in
+   * tests, and starts its thread.
+   */
+  SparkConfigApplier(Configurer configurer, String name, Future<?> startAfter) {
+    this.configurer = configurer;
+    this.startAfter = startAfter;
+    Thread thread = new Thread(this::run, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Queues a partial configuration to be applied. Never blocks on the motor controller.
+   *
+   * @param key identifies what this change configures, e.g. "PID". A later submission with the same
+   *     key replaces this one's verifier.
+   * @param config the settings to change. Only the settings set on this object are sent; the
+   *     object must not be modified after submission.
+   * @param verifier checks, on the applier thread, that the settings were applied, e.g. by reading
+   *     them back through {@code configAccessor}.
+   */
+  public void submit(String key, SparkFlexConfig config, BooleanSupplier verifier) {
+    synchronized (lock) {
+      pending.apply(config);
+      verifiers.put(key, verifier);
+      lastSubmitMillis = System.currentTimeMillis();
+      submittedGeneration++;
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * @return true if there are submitted changes that have not been applied yet.
+   */
+  public boolean isPending() {
+    return appliedGeneration < submittedGeneration;
+  }
+
+  /**
+   * @return true if the last applied changes were read back successfully.
+   */
+  public boolean isVerified() {
+    return verified;
+  }
+
+  /**
+   * @return the error returned by the last {@code configure} attempt.
+   */
+  public REVLibError getLastError() {
+    return lastError;
+  }
+
+  /**
+   * @return the number of batches that could not be applied or verified after all retries.
+   */
+  public int getFailureCount() {
+    return failureCount;
+  }
+
+  private void run() {
+    try {
+      startAfter.get();
+    } catch (InterruptedException e) {
+      return;
+    } catch (ExecutionException e) {
+      // the startup configuration failed and was reported; changes are still worth sending
+    }
+    while (true) {
+      SparkFlexConfig toApply;
+      BooleanSupplier[] toVerify;
+      long generation;
+      try {
+        synchronized (lock) {
+          while (appliedGeneration == submittedGeneration) {
+            lock.wait();
+          }
+          // coalesce edits that arrive in quick succession
+          long quietFor;
+          while ((quietFor = System.currentTimeMillis() - lastSubmitMillis) < COALESCE_WINDOW_MS) {
+            lock.wait(COALESCE_WINDOW_MS - quietFor);
+          }
+          toApply = pending;
+          toVerify = verifiers.values().toArray(new BooleanSupplier[0]);
+          generation = submittedGeneration;
+          pending = new SparkFlexConfig();
+          verifiers.clear();
+        }
+      } catch (InterruptedException e) {
+        return;
+      }
+
+      boolean success = false;
+      for (int attempt = 0; attempt < MAX_ATTEMPTS && !success; attempt++) {
+        if (attempt > 0) {
+          try {
+            Thread.sleep(RETRY_BACKOFF_MS * attempt);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+        lastError = configurer.configure(toApply);
+        success = lastError == REVLibError.kOk && verify(toVerify);
+      }
+      if (!success) {
+        failureCount++;
+      }
+      verified = success;
+      appliedGeneration = generation;
+    }
+  }
+
+  private static boolean verify(BooleanSupplier[] toVerify) {
+    for (BooleanSupplier verifier : toVerify) {
+      if (!verifier.getAsBoolean()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compares a value read back from a motor controller with the value that was sent, allowing for
+   * the controller storing it as a float.
+   *
+   * @param actual the value read back.
+   * @param expected the value sent.
+   * @return true if they match.
+   */
+  public static boolean matches(double actual, double expected) {
+    return Math.abs(actual - expected) <= 1e-6 * Math.max(1.0, Math.abs(expected));
+  }
+}
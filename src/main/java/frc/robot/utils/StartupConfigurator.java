@@ -0,0 +1,152 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import com.revrobotics.PersistMode;
+import com.revrobotics.REVLibError;
+import com.revrobotics.ResetMode;
+import com.revrobotics.spark.SparkBase;
+import com.revrobotics.spark.config.SparkBaseConfig;
+import edu.wpi.first.wpilibj.Alert;
+import edu.wpi.first.wpilibj.Alert.AlertType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Configures motor controllers at startup concurrently instead of one after another. IOs submit
+ * their devices' configurations from their constructors, which return immediately; each device is
+ * then configured on a small thread pool, retried with exponential backoff, and verified by reading
+ * back its critical parameters. {@link #awaitAll(double)} waits for every device and reports how
+ * long each took and which failed, so boot time stays roughly flat as devices are added.
+ */
+public final class StartupConfigurator {
+  private static final int THREADS = 4;
+  private static final int MAX_ATTEMPTS = 5;
+  private static final long INITIAL_BACKOFF_MS = 50;
+
+  private static final AtomicInteger threadCount = new AtomicInteger();
+  private static final ExecutorService executor =
+      Executors.newFixedThreadPool(
+          THREADS,
+          runnable -> {
+            Thread thread =
+                new Thread(runnable, "StartupConfigurator-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+  private static final List<Device> devices = new ArrayList<>();
+
+  private StartupConfigurator() {}
+
+  /** The outcome of configuring one device. */
+  private static final class Device {
+    final String name;
+    final long submitNanos = System.nanoTime();
+    Future<?> future;
+    volatile double seconds = Double.NaN;
+    volatile int attempts = 0;
+    volatile REVLibError error = REVLibError.kOk;
+    volatile boolean verified = false;
+
+    Device(String name) {
+      this.name = name;
+    }
+  }
+
+  /**
+   * Queues a device to be configured. Resets safe parameters and does not persist, like a
+   * synchronous {@code configure} at startup would.
+   *
+   * @param name the device's name, used in the report.
+   * @param spark the device.
+   * @param config its configuration. Must not be modified until {@link #awaitAll(double)} returns.
+   * @param verifier reads back the device's critical parameters and checks them, e.g. through
+   *     {@code configAccessor}.
+   * @return completes when the device is done being configured, successfully or not, even after
+   *     {@link #awaitAll(double)} has timed out. Anything else that configures or polls the device
+   *     should wait for it.
+   */
+  public static synchronized Future<?> submit(
+      String name, SparkBase spark, SparkBaseConfig config, BooleanSupplier verifier) {
+    var device = new Device(name);
+    device.future = executor.submit(() -> configure(device, spark, config, verifier));
+    devices.add(device);
+    return device.future;
+  }
+
+  private static void configure(
+      Device device, SparkBase spark, SparkBaseConfig config, BooleanSupplier verifier) {
+    long backoffMs = INITIAL_BACKOFF_MS;
+    for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+      device.attempts = attempt;
+      device.error =
+          spark.configure(config, ResetMode.kResetSafeParameters, PersistMode.kNoPersistParameters);
+      if (device.error == REVLibError.kOk && verifier.getAsBoolean()) {
+        device.verified = true;
+        break;
+      }
+      if (attempt < MAX_ATTEMPTS) {
+        try {
+          Thread.sleep(backoffMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+        backoffMs *= 2;
+      }
+    }
+    device.seconds = (System.nanoTime() - device.submitNanos) / 1e9;
+  }
+
+  /**
+   * Waits for every submitted device to be configured, then prints and logs a report and raises an
+   * alert for each device that failed.
+   *
+   * @param timeoutSeconds the longest time to wait in total.
+   * @return true if every device was configured and verified.
+   */
+  public static synchronized boolean awaitAll(double timeoutSeconds) {
+    long deadline = System.nanoTime() + (long) (timeoutSeconds * 1e9);
+    boolean allVerified = true;
+    for (Device device : devices) {
+      try {
+        device.future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        // reported below as not verified
+      } catch (Exception e) {
+        device.error = REVLibError.kError;
+      }
+
+      String status =
+          device.verified
+              ? "ok"
+              : Double.isNaN(device.seconds) ? "TIMED OUT" : "FAILED (" + device.error + ")";
+      Diagnostics.message(
+          String.format(
+              Locale.ROOT,
+              "[StartupConfigurator] %s: %s after %d attempt(s), %.3f s",
+              device.name,
+              status,
+              device.attempts,
+              device.seconds));
+      Logger.recordOutput("StartupConfig/" + device.name + "/Verified", device.verified);
+      Logger.recordOutput("StartupConfig/" + device.name + "/Seconds", device.seconds);
+      Logger.recordOutput("StartupConfig/" + device.name + "/Attempts", device.attempts);
+      if (!device.verified) {
+        allVerified = false;
+        new Alert("Configuring " + device.name + " " + status, AlertType.kError).set(true);
+      }
+    }
+    devices.clear();
+    return allVerified;
+  }
+}
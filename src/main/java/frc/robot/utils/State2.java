@@ -5,11 +5,12 @@ package frc.robot.utils;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
+import edu.wpi.first.wpilibj2.command.Subsystem;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
@@ -18,21 +19,47 @@ import lombok.Getter;
 
 @Getter(AccessLevel.PROTECTED)
 public class State2 {
-  private String name;
+  @Getter private String name;
   private Set<Command> commandsWhileRunning;
   private Set<InstantCommand> commandsOnEnter;
   private Set<InstantCommand> commandsOnExit;
-  private Map<BooleanSupplier, Supplier<State2>> endConditions;
+  private List<BooleanSupplier> endConditions;
+  private List<Supplier<State2>> nextStateSuppliers;
+  private List<BooleanSupplier> triggers;
+  private List<Supplier<State2>> triggerTargetSuppliers;
   private StateMachine2 stateMachine;
   private boolean initialized = false;
 
+  /** The state this is nested in, or null for a top-level state. */
+  private State2 parent;
+
+  /** The child entered along with this state, or null if this state has no children. */
+  private State2 defaultChild = null;
+
+  /**
+   * Subsystems handed to this state's children, which only their commands may require, or null if
+   * the children share this state's subsystems.
+   */
+  private Set<Subsystem> childSubsystems = null;
+
+  /** Index of this state in its parent machine's compiled transition table, or -1 if uncompiled. */
+  private int id = -1;
+
   protected State2(String name, StateMachine2 stateMachine) {
+    this(name, stateMachine, null);
+  }
+
+  protected State2(String name, StateMachine2 stateMachine, State2 parent) {
     this.name = name;
     this.stateMachine = stateMachine;
+    this.parent = parent;
     this.commandsWhileRunning = new HashSet<>();
     this.commandsOnEnter = new HashSet<>();
     this.commandsOnExit = new HashSet<>();
-    this.endConditions = new HashMap<>();
+    this.endConditions = new ArrayList<>();
+    this.nextStateSuppliers = new ArrayList<>();
+    this.triggers = new ArrayList<>();
+    this.triggerTargetSuppliers = new ArrayList<>();
   }
 
   /**
@@ -43,11 +70,13 @@ public class State2 {
    * this state becomes active and cancelled on the loop this state becomes inactive.
    *
    * @param commands The commands. All requirements of these commands must be contained in the
-   *     requirements of this state's parent state machine, or else a RuntimeException is thrown.
+   *     requirements of this state's parent state machine, or in the subsystems handed to the
+   *     children of an ancestor with {@link #withChildSubsystems(Subsystem...)}, and not in those
+   *     handed to this state's own children, or else a RuntimeException is thrown.
    * @return this object, for method chaining.
    */
   public State2 whileRunning(Command... commands) {
-    var allowedRequirements = stateMachine.subsystems;
+    var allowedRequirements = getAllowedRequirements();
     if (!(Arrays.stream(commands)
         .allMatch(command -> allowedRequirements.containsAll(command.getRequirements())))) {
       throw new RuntimeException(
@@ -55,8 +84,11 @@ public class State2 {
               + name
               + "'s parent state machine!");
     }
+    checkNotHandedToChildren(commands);
     Arrays.stream(commands).forEach(commandsWhileRunning::add);
     this.initialized = false;
+    stateMachine.markDirty();
+    stateMachine.invalidate();
     return this;
   }
 
@@ -74,11 +106,13 @@ public class State2 {
    * {@link State2#onExit(InstantCommand...)}
    *
    * @param commands The commands. All requirements of these commands must be contained in the
-   *     requirements of this state's parent state machine, or else a RuntimeException is thrown.
+   *     requirements of this state's parent state machine, or in the subsystems handed to the
+   *     children of an ancestor with {@link #withChildSubsystems(Subsystem...)}, and not in those
+   *     handed to this state's own children, or else a RuntimeException is thrown.
    * @return this object, for method chaining.
    */
   public State2 onEnter(InstantCommand... commands) {
-    var allowedRequirements = stateMachine.subsystems;
+    var allowedRequirements = getAllowedRequirements();
     if (!(Arrays.stream(commands)
         .allMatch(command -> allowedRequirements.containsAll(command.getRequirements())))) {
       throw new RuntimeException(
@@ -86,8 +120,11 @@ public class State2 {
               + name
               + "'s parent state machine!");
     }
+    checkNotHandedToChildren(commands);
     Arrays.stream(commands).forEach(commandsOnEnter::add);
     this.initialized = false;
+    stateMachine.markDirty();
+    stateMachine.invalidate();
     return this;
   }
 
@@ -103,11 +140,13 @@ public class State2 {
    * see {@link State2#whileRunning(Command...)} instead.
    *
    * @param commands The commands. All requirements of these commands must be contained in the
-   *     requirements of this state's parent state machine, or else a RuntimeException is thrown.
+   *     requirements of this state's parent state machine, or in the subsystems handed to the
+   *     children of an ancestor with {@link #withChildSubsystems(Subsystem...)}, and not in those
+   *     handed to this state's own children, or else a RuntimeException is thrown.
    * @return this object, for method chaining.
    */
   public State2 onExit(InstantCommand... commands) {
-    var allowedRequirements = stateMachine.subsystems;
+    var allowedRequirements = getAllowedRequirements();
     if (!(Arrays.stream(commands)
         .allMatch(command -> allowedRequirements.containsAll(command.getRequirements())))) {
       throw new RuntimeException(
@@ -115,68 +154,179 @@ public class State2 {
               + name
               + "'s parent state machine!");
     }
+    checkNotHandedToChildren(commands);
     Arrays.stream(commands).forEach(commandsOnExit::add);
+    stateMachine.invalidate();
     return this;
   }
 
   /**
    * Adds an end condition to this state and supplies the next state to transition to.
    *
+   * End conditions are checked in the order they were added, and the first one that is true wins.
+   *
    * @param endCondition a BooleanSupplier that returns true when this state should change to the
    *     next state. This is simply queried to see if it <b>is</b> true, not if it becomes true to
    *     see if the state should change.
    * @param nextStateSupplier supplies the next state. Is a supplier to account for null errors if a
-   *     state has not been initialized yet, but suppliers should generally point to one {@link
+   *     state has not been initialized yet. It is resolved once, when the parent {@link
+   *     StateMachine2} compiles its transition table, so it should always point to one {@link
    *     State2}. A RuntimeException will be thrown by the parent {@link StateMachine2} if the
    *     supplied state does not belong to the parent machine.
    * @return this object, for method chaining.
    */
   public State2 withEndCondition(BooleanSupplier endCondition, Supplier<State2> nextStateSupplier) {
-    this.endConditions.put(endCondition, nextStateSupplier);
+    this.endConditions.add(endCondition);
+    this.nextStateSuppliers.add(nextStateSupplier);
+    stateMachine.invalidate();
     return this;
   }
 
+  /**
+   * Adds a trigger that changes to the next state when it becomes true while this state is active.
+   *
+   * <p>Triggers are evaluated by the parent {@link StateMachine2} at the start of each loop, before
+   * the command scheduler, and only the active state's triggers are evaluated. A trigger fires when
+   * it is true and was false on the previous loop, and this state was already active on the
+   * previous loop; on the first loop after this state becomes active, triggers are only sampled.
+   * Triggers are checked in the order they were added, and the first one that fires wins.
+   *
+   * @param trigger the trigger.
+   * @param nextStateSupplier supplies the next state. It is called each time the trigger fires, so
+   *     it may return a different state each time, or one created after this call. A
+   *     RuntimeException will be thrown by the parent {@link StateMachine2} if the supplied state
+   *     is null or does not belong to the parent machine.
+   * @return this object, for method chaining.
+   */
   public State2 onTrigger(Trigger trigger, Supplier<State2> nextStateSupplier) {
-    new Trigger(
-            new InternalTwoStateTrigger(
-                new Trigger(() -> stateMachine.getActiveState() == this), trigger))
-        .onTrue(new InstantCommand(() -> stateMachine.setState(nextStateSupplier.get())));
+    this.triggers.add(trigger);
+    this.triggerTargetSuppliers.add(nextStateSupplier);
+    stateMachine.invalidate();
     return this;
   }
 
-  protected void init() {
-    commandsOnEnter.forEach(CommandScheduler.getInstance()::schedule);
-    commandsWhileRunning.forEach(CommandScheduler.getInstance()::schedule);
-    this.initialized = true;
+  /**
+   * Creates a state nested in this one, for use with the same state machine, with the machine's
+   * default template if one is specified. While a child is active, this state is active too: its
+   * commands keep running, and its end conditions and triggers apply to the child after the child's
+   * own. A state with children is never active on its own; transitioning to it enters its {@link
+   * #defaultChild(String)}.
+   *
+   * @param name the name of the child.
+   * @return the child.
+   */
+  public State2 child(String name) {
+    return stateMachine.createState(this, name);
   }
 
-  protected void exit() {
-    commandsWhileRunning.forEach(CommandScheduler.getInstance()::cancel);
-    commandsOnExit.forEach(CommandScheduler.getInstance()::schedule);
-    this.initialized = false;
+  /**
+   * Creates the child entered when this state is entered. See {@link #child(String)}. A state with
+   * children must have a default child, or else a RuntimeException is thrown by the parent {@link
+   * StateMachine2}.
+   *
+   * @param name the name of the child.
+   * @return the child.
+   */
+  public State2 defaultChild(String name) {
+    var child = child(name);
+    this.defaultChild = child;
+    return child;
   }
 
   /**
-   * Because of Things, only returns true when it should *fire*, not all the time it should be true.
+   * Hands subsystems to this state's children, e.g. so that a group of children acts as a
+   * sub-machine that controls part of the mechanism while this state's own commands control the
+   * rest. The commands of the children and their descendants may then only require these
+   * subsystems, and this state's own commands may not require any of them, so entering or leaving a
+   * child never interrupts this state's commands.
+   *
+   * <p>Independently of this, the parent {@link StateMachine2} throws a RuntimeException if any
+   * state's commands require a subsystem that one of its ancestors' {@link #whileRunning} commands
+   * require.
+   *
+   * @param subsystems the subsystems. Must be a subset of the subsystems allowed for this state, and
+   *     not required by any of its commands, or else a RuntimeException is thrown.
+   * @return this object, for method chaining.
    */
-  private class InternalTwoStateTrigger implements BooleanSupplier {
-    private final BooleanSupplier first;
-    private final BooleanSupplier second;
-    private boolean firstWasTrue = false;
-    private boolean secondWasTrue = false;
-
-    public InternalTwoStateTrigger(Trigger first, Trigger second) {
-      this.first = first;
-      this.second = second;
+  public State2 withChildSubsystems(Subsystem... subsystems) {
+    var handed = new HashSet<Subsystem>(Arrays.asList(subsystems));
+    if (!getAllowedRequirements().containsAll(handed)) {
+      throw new RuntimeException(
+          "Subsystems handed to the children of "
+              + name
+              + " are not contained within its allowed requirements!");
     }
+    for (Subsystem subsystem : handed) {
+      if (requires(subsystem)) {
+        throw new RuntimeException(
+            "Subsystems handed to the children of " + name + " are required by its own commands!");
+      }
+    }
+    this.childSubsystems = handed;
+    return this;
+  }
 
-    public boolean getAsBoolean() {
-      boolean ret = firstWasTrue && !secondWasTrue && first.getAsBoolean() && second.getAsBoolean();
+  /**
+   * @return the subsystems the commands of this state may require: those handed to the children of
+   *     its nearest ancestor that hands any, or else all of the machine's.
+   */
+  protected Set<Subsystem> getAllowedRequirements() {
+    for (State2 state = parent; state != null; state = state.parent) {
+      if (state.childSubsystems != null) {
+        return state.childSubsystems;
+      }
+    }
+    return stateMachine.subsystems;
+  }
 
-      firstWasTrue = first.getAsBoolean();
-      secondWasTrue = second.getAsBoolean();
+  private void checkNotHandedToChildren(Command... commands) {
+    if (childSubsystems == null) {
+      return;
+    }
+    for (Command command : commands) {
+      for (Subsystem subsystem : command.getRequirements()) {
+        if (childSubsystems.contains(subsystem)) {
+          throw new RuntimeException(
+              "Requirements of at least one command of "
+                  + name
+                  + " were handed to its children!");
+        }
+      }
+    }
+  }
+
+  /**
+   * @param subsystem a subsystem.
+   * @return whether any of this state's own commands require the subsystem.
+   */
+  protected boolean requires(Subsystem subsystem) {
+    return requires(commandsWhileRunning, subsystem)
+        || requires(commandsOnEnter, subsystem)
+        || requires(commandsOnExit, subsystem);
+  }
 
-      return ret;
+  private static boolean requires(Set<? extends Command> commands, Subsystem subsystem) {
+    for (Command command : commands) {
+      if (command.getRequirements().contains(subsystem)) {
+        return true;
+      }
     }
+    return false;
+  }
+
+  protected void setId(int id) {
+    this.id = id;
+  }
+
+  protected void init() {
+    commandsOnEnter.forEach(CommandScheduler.getInstance()::schedule);
+    commandsWhileRunning.forEach(CommandScheduler.getInstance()::schedule);
+    this.initialized = true;
+  }
+
+  protected void exit() {
+    commandsWhileRunning.forEach(CommandScheduler.getInstance()::cancel);
+    commandsOnExit.forEach(CommandScheduler.getInstance()::schedule);
+    this.initialized = false;
   }
 }
@@ -2,37 +2,87 @@
 
 package frc.robot.utils;
 
+import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.Subsystem;
 import edu.wpi.first.wpilibj2.command.button.RobotModeTriggers;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Optional;
 import java.util.Set;
 import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 import org.littletonrobotics.junction.Logger;
 
-/** V2 implementation of state machine */
+/**
+ * V2 implementation of state machine. States can be nested with {@link State2#child(String)}: the
+ * active state is always a leaf, and all of its ancestors are active along with it. Transitions
+ * exit states from the active leaf up to, but not including, the deepest state shared with the
+ * target, then enter states from there down to the target's leaf. Exits run innermost first and
+ * entries outermost first. A transition to an active state or one of its ancestors exits and
+ * re-enters that state.
+ */
 public class StateMachine2 extends VirtualSubsystem {
   private State2 defaultState = null;
   private State2 currentState = null;
-  private final Set<State2> allStates;
+  private final List<State2> allStates;
   protected final Set<Subsystem> subsystems;
   private final Map<String, UnaryOperator<State2>> templates;
   private String networkTablesKey = null;
+  private String name = null;
   private boolean restartOnTeleop = false;
 
+  // compiled transition table, rebuilt whenever states or end conditions are added
+  private boolean compiled = false;
+  private State2[] compiledStates = new State2[0];
+  private int[] transitionStart = new int[1];
+  private BooleanSupplier[] transitionConditions = new BooleanSupplier[0];
+  private int[] transitionTargets = new int[0];
+  // onTrigger transitions, laid out the same way, with the state that owns each one and its index
+  // in triggerWasTrue, its value on the last loop. Their targets are only resolved when they fire.
+  private int[] triggerStart = new int[1];
+  private BooleanSupplier[] triggerConditions = new BooleanSupplier[0];
+  private Supplier<State2>[] triggerTargets = newSupplierArray(0);
+  private int[] triggerOwners = new int[0];
+  private int[] triggerSources = new int[0];
+  private boolean[] triggerWasTrue = new boolean[0];
+  // whether each state's triggers were sampled on a previous loop while it was active
+  private boolean[] triggersArmed = new boolean[0];
+  private boolean armPending = true;
+
+  // hierarchy, by id: each state's ancestors from the outermost down to itself, and the leaf
+  // entered when transitioning to it
+  private int[][] chains = new int[0][];
+  private int[] entryLeaves = new int[0];
+  // exit and entry sequences by from * stateCount + to, built the first time each is taken
+  private int[][] exitSequences = new int[0][];
+  private int[][] entrySequences = new int[0][];
+  // whether commands were added to a state, which might be active and need to be re-initialized
+  private boolean reinitPending = false;
+
   private final String DEFAULT_TEMPLATE_KEY = "DEFAULT";
 
+  // metrics, sized by compile(); only published when the machine is published
+  /** Number of dwell times kept per state. */
+  private static final int DWELL_WINDOW = 100;
+
+  private String metricsKey = null;
+  private long loopIndex = 0;
+  private long transitionCount = 0;
+  private long enteredMicros = 0;
+  // edge counts and their log keys, indexed by from * stateCount + to
+  private long[] edgeCounts = new long[0];
+  private String[] edgeKeys = new String[0];
+  private RollingHistogram[] dwellMicros = new RollingHistogram[0];
+
   public StateMachine2(Subsystem... subsystems) {
     this.subsystems = new HashSet<>();
     Arrays.stream(subsystems).forEach(this.subsystems::add);
-    allStates = new HashSet<>();
+    allStates = new ArrayList<>();
     templates = new HashMap<>();
   }
 
@@ -45,11 +95,23 @@ public class StateMachine2 extends VirtualSubsystem {
    * @return the state
    */
   public State2 state(String name) {
-    var state = new State2(name, this);
+    return createState(null, name);
+  }
+
+  /**
+   * Creates a state with the default template, if one is specified.
+   *
+   * @param parent the state to nest it in, or null for a top-level state.
+   * @param name the name of the state.
+   * @return the state.
+   */
+  protected State2 createState(State2 parent, String name) {
+    var state = new State2(name, this, parent);
     if (templates.containsKey(DEFAULT_TEMPLATE_KEY)) {
       state = templates.get(DEFAULT_TEMPLATE_KEY).apply(state);
     }
     allStates.add(state);
+    invalidate();
     return state;
   }
 
@@ -85,6 +147,7 @@ public class StateMachine2 extends VirtualSubsystem {
       throw new RuntimeException("No template configured with name " + templateName + "!");
     }
     allStates.add(state);
+    invalidate();
     return state;
   }
 
@@ -121,12 +184,50 @@ public class StateMachine2 extends VirtualSubsystem {
   /** Handles default states. Does not need to be called by user code. */
   @Override
   public void periodic() {
+    loopIndex++;
+    if (!compiled) {
+      compile();
+    }
+
     // handle default state and state nulls
     if (defaultState == null) {
       throw new RuntimeException("Default state has not been configured!");
     } else if (currentState == null) {
-      currentState = defaultState;
-      currentState.init();
+      int leaf = entryLeaves[defaultState.getId()];
+      currentState = compiledStates[leaf];
+      for (int id : chains[leaf]) {
+        compiledStates[id].init();
+      }
+      armPending = true;
+      recordEntry();
+    }
+
+    evaluateTriggers();
+  }
+
+  /**
+   * Checks the triggers of the active state and its ancestors for rising edges. The first time a
+   * state's triggers are evaluated after it becomes active, they are only sampled.
+   */
+  private void evaluateTriggers() {
+    int id = currentState.getId();
+    int fired = -1;
+    for (int i = triggerStart[id]; i < triggerStart[id + 1]; i++) {
+      int source = triggerSources[i];
+      boolean value = triggerConditions[i].getAsBoolean();
+      if (fired == -1 && triggersArmed[triggerOwners[i]] && value && !triggerWasTrue[source]) {
+        fired = i;
+      }
+      triggerWasTrue[source] = value;
+    }
+    if (armPending) {
+      for (int active : chains[id]) {
+        triggersArmed[active] = true;
+      }
+      armPending = false;
+    }
+    if (fired != -1) {
+      setState(checkTarget(triggerTargets[fired].get()));
     }
   }
 
@@ -136,45 +237,270 @@ public class StateMachine2 extends VirtualSubsystem {
    */
   @Override
   public void periodicAfterScheduler() {
-    if (!currentState.isInitialized()) {
-      currentState.exit();
-      currentState.init();
-    }
-
-    // check if we need to change state
-    Optional<Entry<BooleanSupplier, Supplier<State2>>> validEndCondition =
-        currentState.getEndConditions().entrySet().stream()
-            .filter(entry -> entry.getKey().getAsBoolean())
-            .findFirst();
-    // if it exists, handle the state change
-    validEndCondition.ifPresent(
-        entry -> {
-          currentState.exit();
-          var newState = entry.getValue().get();
-          if (newState.getStateMachine() != this) {
-            currentState = defaultState;
-            currentState.init();
-            throw new RuntimeException(
-                "Parent state machine of "
-                    + newState.getName()
-                    + " does not match this state machine!");
-          } else {
-            currentState = newState;
-            currentState.init();
+    if (!compiled) {
+      compile();
+    }
+
+    if (reinitPending) {
+      reinitPending = false;
+      for (int id : chains[currentState.getId()]) {
+        State2 state = compiledStates[id];
+        if (!state.isInitialized()) {
+          state.exit();
+          state.init();
+        }
+      }
+    }
+
+    // check if we need to change state; the first end condition that is true wins
+    int id = currentState.getId();
+    for (int i = transitionStart[id]; i < transitionStart[id + 1]; i++) {
+      if (transitionConditions[i].getAsBoolean()) {
+        setState(compiledStates[transitionTargets[i]]);
+        break;
+      }
+    }
+  }
+
+  /**
+   * Marks the compiled transition table as stale, so it is rebuilt on the next loop. Called
+   * whenever a state or an end condition is added.
+   */
+  protected void invalidate() {
+    this.compiled = false;
+  }
+
+  /** Notes that commands were added to a state, so the active states are checked on next loop. */
+  protected void markDirty() {
+    this.reinitPending = true;
+  }
+
+  /**
+   * Freezes all states of this machine into flat arrays: every state gets an integer id, and the
+   * end conditions of state {@code id} occupy the range {@code [transitionStart[id],
+   * transitionStart[id + 1])} of {@link #transitionConditions} and {@link #transitionTargets}. Each
+   * state's range holds its own end conditions followed by those of each of its ancestors,
+   * innermost first, so that inherited transitions cost the same as a state's own and no parent is
+   * looked up while running. Triggers are laid out the same way. This lets the loop evaluate
+   * transitions with an indexed loop and no allocation.
+   */
+  private void compile() {
+    int stateCount = allStates.size();
+    State2[] states = allStates.toArray(new State2[stateCount]);
+    for (int i = 0; i < stateCount; i++) {
+      states[i].setId(i);
+    }
+
+    // a state's command requiring what an ancestor's whileRunning command requires would interrupt
+    // that command whenever the state is entered, and it is never rescheduled
+    for (State2 state : states) {
+      for (State2 ancestor = state.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+        for (Command command : ancestor.getCommandsWhileRunning()) {
+          for (Subsystem subsystem : command.getRequirements()) {
+            if (state.requires(subsystem)) {
+              throw new RuntimeException(
+                  "Commands of "
+                      + state.getName()
+                      + " require a subsystem required by the commands of its ancestor "
+                      + ancestor.getName()
+                      + "!");
+            }
           }
-        });
+        }
+      }
+    }
 
-    if (networkTablesKey != null) {
-      Logger.recordOutput(networkTablesKey, currentState.getName());
+    boolean[] hasChildren = new boolean[stateCount];
+    for (State2 state : states) {
+      if (state.getParent() != null) {
+        hasChildren[state.getParent().getId()] = true;
+      }
+    }
+    int[][] chains = new int[stateCount][];
+    int[] entryLeaves = new int[stateCount];
+    for (int i = 0; i < stateCount; i++) {
+      int depth = 0;
+      for (State2 state = states[i]; state != null; state = state.getParent()) {
+        depth++;
+      }
+      int[] chain = new int[depth];
+      for (State2 state = states[i]; state != null; state = state.getParent()) {
+        chain[--depth] = state.getId();
+      }
+      chains[i] = chain;
+
+      State2 leaf = states[i];
+      while (hasChildren[leaf.getId()]) {
+        if (leaf.getDefaultChild() == null) {
+          throw new RuntimeException(leaf.getName() + " has children but no default child!");
+        }
+        leaf = leaf.getDefaultChild();
+      }
+      entryLeaves[i] = leaf.getId();
+    }
+
+    // resolve each state's own transitions once, then copy them into every descendant's range
+    int[][] ownTargets = new int[stateCount][];
+    int[] triggerOffsets = new int[stateCount];
+    int triggerSourceCount = 0;
+    for (int i = 0; i < stateCount; i++) {
+      var nextStateSuppliers = states[i].getNextStateSuppliers();
+      ownTargets[i] = new int[nextStateSuppliers.size()];
+      for (int j = 0; j < ownTargets[i].length; j++) {
+        ownTargets[i][j] = checkTarget(nextStateSuppliers.get(j).get()).getId();
+      }
+      triggerOffsets[i] = triggerSourceCount;
+      triggerSourceCount += states[i].getTriggers().size();
+    }
+
+    int transitionCount = 0;
+    int triggerCount = 0;
+    for (int i = 0; i < stateCount; i++) {
+      for (int ancestor : chains[i]) {
+        transitionCount += ownTargets[ancestor].length;
+        triggerCount += states[ancestor].getTriggers().size();
+      }
+    }
+
+    int[] start = new int[stateCount + 1];
+    BooleanSupplier[] conditions = new BooleanSupplier[transitionCount];
+    int[] targets = new int[transitionCount];
+    int[] triggerStart = new int[stateCount + 1];
+    BooleanSupplier[] triggerConditions = new BooleanSupplier[triggerCount];
+    Supplier<State2>[] triggerTargets = newSupplierArray(triggerCount);
+    int[] triggerOwners = new int[triggerCount];
+    int[] triggerSources = new int[triggerCount];
+
+    int index = 0;
+    int triggerIndex = 0;
+    for (int i = 0; i < stateCount; i++) {
+      start[i] = index;
+      triggerStart[i] = triggerIndex;
+      for (int k = chains[i].length - 1; k >= 0; k--) {
+        int owner = chains[i][k];
+        var endConditions = states[owner].getEndConditions();
+        for (int j = 0; j < endConditions.size(); j++) {
+          conditions[index] = endConditions.get(j);
+          targets[index] = ownTargets[owner][j];
+          index++;
+        }
+        var triggers = states[owner].getTriggers();
+        var triggerTargetSuppliers = states[owner].getTriggerTargetSuppliers();
+        for (int j = 0; j < triggers.size(); j++) {
+          triggerConditions[triggerIndex] = triggers.get(j);
+          triggerTargets[triggerIndex] = triggerTargetSuppliers.get(j);
+          triggerOwners[triggerIndex] = owner;
+          triggerSources[triggerIndex] = triggerOffsets[owner] + j;
+          triggerIndex++;
+        }
+      }
+    }
+    start[stateCount] = index;
+    triggerStart[stateCount] = triggerIndex;
+
+    this.compiledStates = states;
+    this.transitionStart = start;
+    this.transitionConditions = conditions;
+    this.transitionTargets = targets;
+    this.triggerStart = triggerStart;
+    this.triggerConditions = triggerConditions;
+    this.triggerTargets = triggerTargets;
+    this.triggerOwners = triggerOwners;
+    this.triggerSources = triggerSources;
+    this.triggerWasTrue = new boolean[triggerSourceCount];
+    // the trigger values are lost, so sample them again before firing
+    this.triggersArmed = new boolean[stateCount];
+    this.armPending = true;
+    this.chains = chains;
+    this.entryLeaves = entryLeaves;
+    this.exitSequences = new int[stateCount * stateCount][];
+    this.entrySequences = new int[stateCount * stateCount][];
+    this.compiled = true;
+
+    if (dwellMicros.length != stateCount) {
+      // edge keys are built lazily, the first time each edge is taken
+      int previousCount = dwellMicros.length;
+      long[] counts = new long[stateCount * stateCount];
+      for (int from = 0; from < previousCount; from++) {
+        System.arraycopy(
+            edgeCounts, from * previousCount, counts, from * stateCount, previousCount);
+      }
+      edgeCounts = counts;
+      edgeKeys = new String[stateCount * stateCount];
+      RollingHistogram[] dwell = Arrays.copyOf(dwellMicros, stateCount);
+      for (int i = previousCount; i < stateCount; i++) {
+        dwell[i] = new RollingHistogram(DWELL_WINDOW);
+      }
+      dwellMicros = dwell;
+    }
+  }
+
+  /**
+   * Builds the states exited and entered going from an active leaf to a target. States shared by
+   * both chains stay active, except the target itself and its ancestors when the target is already
+   * active, which are exited and re-entered.
+   */
+  private void buildSequences(int from, int to, int edge) {
+    int[] fromChain = chains[from];
+    int[] toChain = chains[to];
+    int[] leafChain = chains[entryLeaves[to]];
+    int common = 0;
+    while (common < fromChain.length
+        && common < toChain.length - 1
+        && fromChain[common] == toChain[common]) {
+      common++;
+    }
+    int[] exits = new int[fromChain.length - common];
+    for (int k = 0; k < exits.length; k++) {
+      exits[k] = fromChain[fromChain.length - 1 - k];
+    }
+    exitSequences[edge] = exits;
+    entrySequences[edge] = Arrays.copyOfRange(leafChain, common, leafChain.length);
+  }
+
+  /** Checks that a transition's target belongs to this machine. */
+  private State2 checkTarget(State2 newState) {
+    if (newState == null || newState.getStateMachine() != this) {
+      throw new RuntimeException(
+          "Parent state machine of "
+              + (newState == null ? "null" : newState.getName())
+              + " does not match this state machine!");
     }
+    return newState;
   }
 
+  @SuppressWarnings("unchecked")
+  private static Supplier<State2>[] newSupplierArray(int length) {
+    return (Supplier<State2>[]) new Supplier<?>[length];
+  }
+
+  /**
+   * @return the active leaf state. Its ancestors are active too.
+   */
   public State2 getActiveState() {
     return this.currentState;
   }
 
   /**
-   * Publishes the name of the current running state of this state machine to NT.
+   * @param state a state of this machine.
+   * @return whether the state is active, either as the active leaf or as one of its ancestors.
+   */
+  public boolean isActive(State2 state) {
+    if (!compiled) {
+      compile();
+    }
+    if (currentState == null) {
+      return false;
+    }
+    int[] chain = chains[currentState.getId()];
+    int depth = chains[state.getId()].length - 1;
+    return depth < chain.length && chain[depth] == state.getId();
+  }
+
+  /**
+   * Publishes the name of the current running state of this state machine to NT, whenever it
+   * changes. Also publishes transition metrics under "/Internal/StateMetrics/<key>": the count of
+   * each edge taken, dwell time percentiles per state, and the loop index of the last transition.
    *
    * @param key the key. The fully qualified name of the NetworkTables path will be
    *     "/Internal/State/<key>"
@@ -182,13 +508,99 @@ public class StateMachine2 extends VirtualSubsystem {
    */
   public StateMachine2 publishToNT(String key) {
     this.networkTablesKey = "/Internal/State/" + key;
+    this.metricsKey = "/Internal/StateMetrics/" + key + "/";
+    this.name = key;
     return this;
   }
 
+  @Override
+  protected Priority getPriority() {
+    return Priority.CRITICAL;
+  }
+
+  @Override
+  protected String getName() {
+    return name == null ? super.getName() : name;
+  }
+
   protected void setState(State2 state) {
-    this.currentState.exit();
-    this.currentState = state;
-    this.currentState.init();
+    if (!compiled) {
+      compile();
+    }
+    State2 previous = this.currentState;
+    int from = previous.getId();
+    int to = state.getId();
+    int edge = from * compiledStates.length + to;
+    if (exitSequences[edge] == null) {
+      buildSequences(from, to, edge);
+    }
+    for (int id : exitSequences[edge]) {
+      compiledStates[id].exit();
+      triggersArmed[id] = false;
+    }
+    this.currentState = compiledStates[entryLeaves[to]];
+    for (int id : entrySequences[edge]) {
+      compiledStates[id].init();
+    }
+    this.armPending = true;
+    recordTransition(previous);
+  }
+
+  /**
+   * Counts a transition from a state into the current one, and records how long the previous state
+   * lasted. Only logs while transitioning, never on steady loops.
+   */
+  private void recordTransition(State2 previous) {
+    int from = previous.getId();
+    int to = currentState.getId();
+    int edge = from * compiledStates.length + to;
+    long now = Logger.getTimestamp();
+    long dwell = now - enteredMicros;
+    edgeCounts[edge]++;
+    transitionCount++;
+    RollingHistogram histogram = dwellMicros[from];
+    histogram.record(dwell);
+
+    if (metricsKey != null) {
+      if (edgeKeys[edge] == null) {
+        edgeKeys[edge] = metricsKey + "Edges/" + previous.getName() + "->" + currentState.getName();
+      }
+      String dwellKey = metricsKey + "Dwell/" + previous.getName() + "/";
+      Logger.recordOutput(edgeKeys[edge], edgeCounts[edge]);
+      Logger.recordOutput(metricsKey + "TransitionCount", transitionCount);
+      Logger.recordOutput(metricsKey + "TransitionLoop", loopIndex);
+      Logger.recordOutput(metricsKey + "PreviousState", previous.getName());
+      Logger.recordOutput(dwellKey + "LastMs", dwell / 1e3);
+      Logger.recordOutput(dwellKey + "P50Ms", histogram.percentile(0.5) / 1e3);
+      Logger.recordOutput(dwellKey + "P99Ms", histogram.percentile(0.99) / 1e3);
+      Logger.recordOutput(dwellKey + "MaxMs", histogram.max() / 1e3);
+      Logger.recordOutput(dwellKey + "Count", histogram.size());
+    }
+    recordEntry();
+  }
+
+  /** Starts timing the current state, and logs its name, which only changes here. */
+  private void recordEntry() {
+    enteredMicros = Logger.getTimestamp();
+    if (networkTablesKey != null) {
+      Logger.recordOutput(networkTablesKey, currentState.getName());
+    }
+  }
+
+  /**
+   * Gets the number of times this machine went from one state straight to another. Transitions are
+   * counted between active leaves, so a transition to a state with children is counted under the
+   * default child it entered, which is what this looks up for such a state.
+   *
+   * @param from the active state transitioned from. Never a state with children.
+   * @param to the state transitioned to.
+   * @return the count.
+   */
+  public long getTransitionCount(State2 from, State2 to) {
+    if (!compiled) {
+      compile();
+    }
+    return edgeCounts[from.getId() * compiledStates.length + entryLeaves[to.getId()]];
   }
 
   // TODO: find a better way to implement this
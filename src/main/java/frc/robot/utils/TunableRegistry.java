@@ -0,0 +1,161 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Central registry of every {@link LoggedTunableNumber}. Once per loop it polls all of them into a
+ * primitive array and dispatches change callbacks to subscribers, without boxing or allocating.
+ *
+ * <p>Runs as a deferrable {@link VirtualSubsystem}, so on a loop without time to spare tuning
+ * changes are simply picked up a loop later.
+ */
+public class TunableRegistry extends VirtualSubsystem {
+  private static TunableRegistry instance = null;
+
+  private LoggedTunableNumber[] tunables = new LoggedTunableNumber[16];
+  private double[] values = new double[16];
+  private long[] changed = new long[1];
+  private int count = 0;
+  private final List<Subscription> subscriptions = new ArrayList<>();
+
+  private TunableRegistry() {}
+
+  /**
+   * @return the registry, created on first use.
+   */
+  public static TunableRegistry getInstance() {
+    if (instance == null) {
+      instance = new TunableRegistry();
+    }
+    return instance;
+  }
+
+  /**
+   * Adds a tunable to the registry. Called by {@link LoggedTunableNumber}'s constructor.
+   *
+   * @return the index of the tunable in the registry.
+   */
+  int register(LoggedTunableNumber tunable) {
+    if (count == tunables.length) {
+      tunables = Arrays.copyOf(tunables, count * 2);
+      values = Arrays.copyOf(values, count * 2);
+    }
+    if (count >> 6 >= changed.length) {
+      changed = Arrays.copyOf(changed, changed.length * 2);
+    }
+    tunables[count] = tunable;
+    values[count] = tunable.get();
+    return count++;
+  }
+
+  /**
+   * Refreshes the polled value of a tunable, e.g. after its default is set. Does not count as a
+   * change.
+   */
+  void refresh(int index) {
+    values[index] = tunables[index].get();
+  }
+
+  /**
+   * Runs an action every loop where any of the given tunables has changed since the last time the
+   * action ran (or since subscribing).
+   *
+   * @param action the callback. It receives the current values in the order the tunables were
+   *     passed; the array is reused between calls, so it must not be kept.
+   * @param tunables the tunables to watch.
+   * @return the subscription.
+   */
+  public Subscription subscribe(Consumer<double[]> action, LoggedTunableNumber... tunables) {
+    var subscription = new Subscription(action, tunables);
+    subscriptions.add(subscription);
+    return subscription;
+  }
+
+  @Override
+  protected Priority getPriority() {
+    return Priority.LOW;
+  }
+
+  @Override
+  protected boolean isDeferrable() {
+    return true;
+  }
+
+  /** Polls every tunable and runs the callbacks of subscriptions whose tunables changed. */
+  @Override
+  public void periodic() {
+    boolean anyChanged = false;
+    for (int i = 0; i < count; i++) {
+      double value = tunables[i].get();
+      if (value != values[i]) {
+        values[i] = value;
+        changed[i >> 6] |= 1L << i;
+        anyChanged = true;
+      }
+    }
+    if (!anyChanged) {
+      return;
+    }
+
+    for (int i = 0; i < subscriptions.size(); i++) {
+      subscriptions.get(i).dispatch();
+    }
+    Arrays.fill(changed, 0);
+  }
+
+  @Override
+  public void periodicAfterScheduler() {}
+
+  /** A change callback over a fixed set of tunables. */
+  public class Subscription {
+    private final Consumer<double[]> action;
+    private final int[] indices;
+    private final double[] snapshot;
+    private final long[] pending;
+
+    private Subscription(Consumer<double[]> action, LoggedTunableNumber[] tunables) {
+      this.action = action;
+      this.indices = new int[tunables.length];
+      this.snapshot = new double[tunables.length];
+      this.pending = new long[(tunables.length + 63) >> 6];
+      for (int j = 0; j < tunables.length; j++) {
+        indices[j] = tunables[j].getRegistryIndex();
+      }
+    }
+
+    private void dispatch() {
+      boolean any = false;
+      for (int j = 0; j < indices.length; j++) {
+        int index = indices[j];
+        if ((changed[index >> 6] & (1L << index)) != 0) {
+          pending[j >> 6] |= 1L << j;
+          any = true;
+        }
+      }
+      if (!any) {
+        return;
+      }
+
+      for (int j = 0; j < indices.length; j++) {
+        snapshot[j] = values[indices[j]];
+      }
+      action.accept(snapshot);
+      Arrays.fill(pending, 0);
+    }
+
+    /**
+     * Whether a tunable triggered the current callback. Only meaningful inside the callback.
+     *
+     * @param position the position of the tunable in the list passed when subscribing.
+     * @return true if it changed.
+     */
+    public boolean hasChanged(int position) {
+      return (pending[position >> 6] & (1L << position)) != 0;
+    }
+  }
+}
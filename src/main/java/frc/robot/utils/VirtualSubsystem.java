@@ -2,14 +2,96 @@
 
 package frc.robot.utils;
 
+import edu.wpi.first.wpilibj.Notifier;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import org.littletonrobotics.junction.LoggedRobot;
+import org.littletonrobotics.junction.Logger;
 
+/**
+ * Logic that runs every robot loop without being a command-based subsystem. An instance may also
+ * have a fast tier: {@link #fastPeriodic()}, run at {@link #getFastPeriod()} on its own thread,
+ * which never runs at the same time as the instance's main loop methods.
+ */
 public abstract class VirtualSubsystem {
   private static List<VirtualSubsystem> instances = new ArrayList<>();
 
+  /** Order in which non-deferrable instances run. Lower ordinals run first. */
+  public enum Priority {
+    /** Control-critical work, e.g. state machines driving mechanisms. */
+    CRITICAL,
+    NORMAL,
+    /** Telemetry and other work that can tolerate running late. */
+    LOW
+  }
+
+  /** How the fast tier is run. */
+  public enum FastTierMode {
+    /** On a {@link Notifier} thread per instance, at its period. */
+    THREADED,
+    /**
+     * From the main loop, as many times as fit in a main loop period, right after the command
+     * scheduler. For running on simulated time, so that every run takes the same steps.
+     */
+    SYNCHRONOUS,
+    /**
+     * Never run. For log replay: an instance with a fast tier logs the inputs of every tick it ran
+     * and re-runs them from {@link #periodic()}, since the ticks' timing and inputs can not be
+     * reconstructed from the main loop's.
+     */
+    REPLAYED
+  }
+
+  private static final String LOG_ROOT = "VirtualSubsystems/";
+  /** Number of loops kept in each rolling timing histogram (5 seconds at 50 Hz). */
+  private static final int HISTOGRAM_WINDOW = 250;
+  /** Percentiles are published once every this many loops to keep sorting off most loops. */
+  private static final int PUBLISH_PERIOD_LOOPS = 50;
+  /** Number of instances reported when a loop runs over budget. */
+  private static final int OFFENDERS_REPORTED = 3;
+  /** A deferrable instance shed this many loops in a row runs regardless of the budget. */
+  static final int MAX_CONSECUTIVE_SHEDS = 10;
+  /** Nominal period of the main loop, which main loop jitter is measured against. */
+  private static final long MAIN_PERIOD_NANOS = (long) (LoggedRobot.defaultPeriodSecs * 1e9);
+
+  private static long loopBudgetNanos = 20_000_000;
+  private static long deferrableBudgetNanos = 10_000_000;
+  private static long loopStartNanos = 0;
+  private static int loopCount = 0;
+  private static int overrunCount = 0;
+  private static final RollingHistogram loopNanos = new RollingHistogram(HISTOGRAM_WINDOW);
+  private static final RollingHistogram loopJitterNanos = new RollingHistogram(HISTOGRAM_WINDOW);
+  private static FastTierMode fastTierMode = FastTierMode.THREADED;
+
+  // run order, rebuilt whenever an instance is added
+  private static boolean scheduleDirty = true;
+  private static VirtualSubsystem[] required = new VirtualSubsystem[0];
+  private static VirtualSubsystem[] deferrable = new VirtualSubsystem[0];
+  private static VirtualSubsystem[] fast = new VirtualSubsystem[0];
+  private static int deferrableCursor = 0;
+  private static long shedTotal = 0;
+
+  private final RollingHistogram periodicNanos = new RollingHistogram(HISTOGRAM_WINDOW);
+  private final RollingHistogram afterSchedulerNanos = new RollingHistogram(HISTOGRAM_WINDOW);
+  private long lastLoopNanos = 0;
+  private boolean ranThisLoop = false;
+  private int consecutiveSheds = 0;
+  private String[] logKeys = null;
+
+  // fast tier; the histograms are guarded by fastTierLock
+  private final Object fastTierLock = new Object();
+  private final RollingHistogram fastNanos = new RollingHistogram(HISTOGRAM_WINDOW);
+  private final RollingHistogram fastJitterNanos = new RollingHistogram(HISTOGRAM_WINDOW);
+  private double fastPeriod = 0.0;
+  private long fastPeriodNanos = 0;
+  private int fastRunsPerLoop = 0;
+  private Notifier fastNotifier = null;
+  private long lastFastStartNanos = 0;
+
   public VirtualSubsystem() {
     instances.add(this);
+    scheduleDirty = true;
   }
 
   /** This method is called periodically before the command scheduler. */
@@ -21,17 +103,356 @@ public abstract class VirtualSubsystem {
    */
   public abstract void periodicAfterScheduler();
 
+  /**
+   * This method is called at {@link #getFastPeriod()} on a separate thread, and should be used for
+   * work that has to run faster than the main loop, such as closed loop control. It never runs at
+   * the same time as {@link #periodic()} or {@link #periodicAfterScheduler()}, so those can hand
+   * inputs and outputs to it through plain fields. Anything else calling into the fast tier must
+   * synchronize on {@link #getFastTierLock()}.
+   *
+   * <p>See {@link FastTierMode} for how it runs in simulation and replay.
+   */
+  protected void fastPeriodic() {}
+
+  /**
+   * The period of {@link #fastPeriodic()}. Only read when the run order is rebuilt, after an
+   * instance is added.
+   *
+   * @return the period, in seconds, or 0 to have no fast tier. Defaults to 0.
+   */
+  protected double getFastPeriod() {
+    return 0.0;
+  }
+
+  /**
+   * @return the lock held while the fast tier or this instance's main loop methods run.
+   */
+  protected final Object getFastTierLock() {
+    return fastTierLock;
+  }
+
+  /**
+   * The name this subsystem's loop timing is published under, at "VirtualSubsystems/<name>". Only
+   * read once, the first time timing is published.
+   *
+   * @return the name. Defaults to the simple class name.
+   */
+  protected String getName() {
+    return getClass().getSimpleName();
+  }
+
+  /**
+   * The priority of this subsystem. Non-deferrable instances always run, in priority order, before
+   * any deferrable ones. Only read when the run order is rebuilt, after an instance is added.
+   *
+   * @return the priority. Defaults to {@link Priority#NORMAL}.
+   */
+  protected Priority getPriority() {
+    return Priority.NORMAL;
+  }
+
+  /**
+   * Whether this subsystem's work can be skipped on loops without enough time left. Deferrable
+   * instances run in round-robin order after all others, only while the loop is within the
+   * deferrable budget; ones that don't fit are first in line on the next loop. When an instance is
+   * skipped, neither its {@link #periodic()} nor its {@link #periodicAfterScheduler()} runs that
+   * loop.
+   *
+   * @return true if deferrable. Defaults to false.
+   */
+  protected boolean isDeferrable() {
+    return false;
+  }
+
+  /**
+   * Sets the loop time budget. Any loop where the virtual subsystems and the command scheduler take
+   * longer than this in total is counted as an overrun, and the slowest subsystems are reported.
+   *
+   * @param seconds the budget, in seconds. Defaults to 0.02.
+   */
+  public static void setLoopBudget(double seconds) {
+    loopBudgetNanos = (long) (seconds * 1e9);
+  }
+
+  /**
+   * Sets the budget for deferrable work. A deferrable instance only runs if the time since the
+   * start of the loop plus its last measured cost fits within this budget, which should leave room
+   * for the command scheduler and everything after it.
+   *
+   * @param seconds the budget, in seconds, measured from the start of {@link #runAllPeriodic()}.
+   *     Defaults to 0.01.
+   */
+  public static void setDeferrableBudget(double seconds) {
+    deferrableBudgetNanos = (long) (seconds * 1e9);
+  }
+
+  /**
+   * Sets how the fast tier runs. Must be called before the first loop.
+   *
+   * @param mode the mode. Defaults to {@link FastTierMode#THREADED}.
+   */
+  public static void setFastTierMode(FastTierMode mode) {
+    fastTierMode = mode;
+  }
+
+  /**
+   * @return how the fast tier runs. See {@link #setFastTierMode(FastTierMode)}.
+   */
+  public static FastTierMode getFastTierMode() {
+    return fastTierMode;
+  }
+
   /** Run the periodic methods for all subsystems. */
   public static void runAllPeriodic() {
-    for (VirtualSubsystem instance : instances) {
-      instance.periodic();
+    long now = System.nanoTime();
+    if (loopStartNanos != 0) {
+      loopJitterNanos.record(Math.abs(now - loopStartNanos - MAIN_PERIOD_NANOS));
+    }
+    loopStartNanos = now;
+    if (scheduleDirty) {
+      rebuildSchedule();
+    }
+
+    for (VirtualSubsystem instance : required) {
+      instance.runPeriodic();
+    }
+
+    int shed = 0;
+    int firstShed = -1;
+    for (int k = 0; k < deferrable.length; k++) {
+      int index = (deferrableCursor + k) % deferrable.length;
+      VirtualSubsystem instance = deferrable[index];
+      long estimate = instance.periodicNanos.latest() + instance.afterSchedulerNanos.latest();
+      boolean fits = System.nanoTime() - loopStartNanos + estimate <= deferrableBudgetNanos;
+      if (fits || instance.consecutiveSheds >= MAX_CONSECUTIVE_SHEDS) {
+        instance.runPeriodic();
+        instance.consecutiveSheds = 0;
+      } else {
+        instance.ranThisLoop = false;
+        instance.lastLoopNanos = 0;
+        instance.consecutiveSheds++;
+        shed++;
+        if (firstShed == -1) {
+          firstShed = index;
+        }
+      }
     }
+    // whatever didn't fit goes first next loop
+    if (firstShed != -1) {
+      deferrableCursor = firstShed;
+    }
+
+    shedTotal += shed;
+    Logger.recordOutput(LOG_ROOT + "ShedCount", shed);
+    Logger.recordOutput(LOG_ROOT + "ShedTotal", shedTotal);
   }
 
   /** Run the "after periodic" methods for all subsystems. */
   public static void runAllPeriodicAfterScheduler() {
+    if (fastTierMode == FastTierMode.SYNCHRONOUS) {
+      for (VirtualSubsystem instance : fast) {
+        for (int i = 0; i < instance.fastRunsPerLoop; i++) {
+          instance.runFastPeriodic(false);
+        }
+      }
+    }
+
+    for (VirtualSubsystem instance : required) {
+      instance.runPeriodicAfterScheduler();
+    }
+    for (VirtualSubsystem instance : deferrable) {
+      if (instance.ranThisLoop) {
+        instance.runPeriodicAfterScheduler();
+      }
+    }
+
+    long elapsed = System.nanoTime() - loopStartNanos;
+    loopNanos.record(elapsed);
+    if (elapsed > loopBudgetNanos) {
+      reportOverrun(elapsed);
+    }
+
+    loopCount++;
+    if (loopCount % PUBLISH_PERIOD_LOOPS == 0) {
+      publishTimings();
+    }
+  }
+
+  private void runPeriodic() {
+    long start = System.nanoTime();
+    synchronized (fastTierLock) {
+      periodic();
+    }
+    long elapsed = System.nanoTime() - start;
+    periodicNanos.record(elapsed);
+    lastLoopNanos = elapsed;
+    ranThisLoop = true;
+  }
+
+  private void runPeriodicAfterScheduler() {
+    long start = System.nanoTime();
+    synchronized (fastTierLock) {
+      periodicAfterScheduler();
+    }
+    long elapsed = System.nanoTime() - start;
+    afterSchedulerNanos.record(elapsed);
+    lastLoopNanos += elapsed;
+  }
+
+  /**
+   * Runs one tick of the fast tier.
+   *
+   * @param measureJitter whether to record the time since the last tick as jitter, which is only
+   *     meaningful on the fast tier's own thread.
+   */
+  private void runFastPeriodic(boolean measureJitter) {
+    synchronized (fastTierLock) {
+      long start = System.nanoTime();
+      if (measureJitter && lastFastStartNanos != 0) {
+        fastJitterNanos.record(Math.abs(start - lastFastStartNanos - fastPeriodNanos));
+      }
+      lastFastStartNanos = start;
+      fastPeriodic();
+      fastNanos.record(System.nanoTime() - start);
+    }
+  }
+
+  /** Forgets every instance and stops their fast tiers, so that each test starts from scratch. */
+  static void resetForTesting() {
     for (VirtualSubsystem instance : instances) {
-      instance.periodicAfterScheduler();
+      if (instance.fastNotifier != null) {
+        instance.fastNotifier.close();
+      }
+    }
+    instances.clear();
+    scheduleDirty = true;
+    loopStartNanos = 0;
+  }
+
+  /**
+   * Splits the instances into the always-run and deferrable groups. The sort is stable, so
+   * instances with the same priority keep their construction order.
+   */
+  private static void rebuildSchedule() {
+    List<VirtualSubsystem> sorted = new ArrayList<>(instances);
+    sorted.sort(Comparator.comparing(VirtualSubsystem::getPriority));
+    required =
+        sorted.stream()
+            .filter(instance -> !instance.isDeferrable())
+            .toArray(VirtualSubsystem[]::new);
+    deferrable =
+        sorted.stream().filter(VirtualSubsystem::isDeferrable).toArray(VirtualSubsystem[]::new);
+    deferrableCursor = 0;
+
+    for (VirtualSubsystem instance : sorted) {
+      if (instance.fastNotifier == null) {
+        instance.fastPeriod = instance.getFastPeriod();
+        instance.fastPeriodNanos = (long) (instance.fastPeriod * 1e9);
+        instance.fastRunsPerLoop =
+            Math.max(1, (int) Math.round(LoggedRobot.defaultPeriodSecs / instance.fastPeriod));
+      }
+    }
+    fast =
+        sorted.stream()
+            .filter(instance -> instance.fastPeriod > 0)
+            .toArray(VirtualSubsystem[]::new);
+    if (fastTierMode == FastTierMode.THREADED) {
+      for (VirtualSubsystem instance : fast) {
+        if (instance.fastNotifier == null) {
+          instance.fastNotifier = new Notifier(() -> instance.runFastPeriodic(true));
+          instance.fastNotifier.setName(instance.getLogKeys()[0] + "Fast");
+          instance.fastNotifier.startPeriodic(instance.fastPeriod);
+        }
+      }
+    }
+    scheduleDirty = false;
+  }
+
+  /** Logs the slowest instances of a loop that went over budget. Only allocates on overruns. */
+  private static void reportOverrun(long elapsedNanos) {
+    overrunCount++;
+    int reported = Math.min(OFFENDERS_REPORTED, instances.size());
+    String[] offenders = new String[reported];
+    boolean[] taken = new boolean[instances.size()];
+    for (int rank = 0; rank < reported; rank++) {
+      int worst = -1;
+      for (int i = 0; i < instances.size(); i++) {
+        if (!taken[i]
+            && (worst == -1
+                || instances.get(i).lastLoopNanos > instances.get(worst).lastLoopNanos)) {
+          worst = i;
+        }
+      }
+      taken[worst] = true;
+      VirtualSubsystem instance = instances.get(worst);
+      offenders[rank] = instance.getLogKeys()[0] + ": " + instance.lastLoopNanos / 1e6 + " ms";
+    }
+    Logger.recordOutput(LOG_ROOT + "Overrun/Count", overrunCount);
+    Logger.recordOutput(LOG_ROOT + "Overrun/LoopMs", elapsedNanos / 1e6);
+    Logger.recordOutput(LOG_ROOT + "Overrun/Offenders", offenders);
+  }
+
+  private static void publishTimings() {
+    Logger.recordOutput(LOG_ROOT + "LoopP50Ms", loopNanos.percentile(0.5) / 1e6);
+    Logger.recordOutput(LOG_ROOT + "LoopP99Ms", loopNanos.percentile(0.99) / 1e6);
+    Logger.recordOutput(LOG_ROOT + "LoopMaxMs", loopNanos.max() / 1e6);
+    Logger.recordOutput(LOG_ROOT + "LoopJitterP50Ms", loopJitterNanos.percentile(0.5) / 1e6);
+    Logger.recordOutput(LOG_ROOT + "LoopJitterP99Ms", loopJitterNanos.percentile(0.99) / 1e6);
+    Logger.recordOutput(LOG_ROOT + "LoopJitterMaxMs", loopJitterNanos.max() / 1e6);
+    for (int i = 0; i < instances.size(); i++) {
+      VirtualSubsystem instance = instances.get(i);
+      String[] keys = instance.getLogKeys();
+      Logger.recordOutput(keys[1], instance.periodicNanos.percentile(0.5) / 1e6);
+      Logger.recordOutput(keys[2], instance.periodicNanos.percentile(0.99) / 1e6);
+      Logger.recordOutput(keys[3], instance.periodicNanos.max() / 1e6);
+      Logger.recordOutput(keys[4], instance.afterSchedulerNanos.percentile(0.5) / 1e6);
+      Logger.recordOutput(keys[5], instance.afterSchedulerNanos.percentile(0.99) / 1e6);
+      Logger.recordOutput(keys[6], instance.afterSchedulerNanos.max() / 1e6);
+    }
+    for (VirtualSubsystem instance : fast) {
+      String[] keys = instance.getLogKeys();
+      synchronized (instance.fastTierLock) {
+        Logger.recordOutput(keys[7], instance.fastNanos.percentile(0.99) / 1e6);
+        Logger.recordOutput(keys[8], instance.fastNanos.max() / 1e6);
+        Logger.recordOutput(keys[9], instance.fastJitterNanos.percentile(0.5) / 1e6);
+        Logger.recordOutput(keys[10], instance.fastJitterNanos.percentile(0.99) / 1e6);
+        Logger.recordOutput(keys[11], instance.fastJitterNanos.max() / 1e6);
+      }
+    }
+  }
+
+  /**
+   * Builds this instance's log keys the first time they are needed, so that names configured after
+   * construction (e.g. {@link StateMachine2#publishToNT(String)}) are picked up. Duplicate names
+   * are disambiguated with the instance's index.
+   */
+  private String[] getLogKeys() {
+    if (logKeys == null) {
+      String name = getName();
+      int index = instances.indexOf(this);
+      for (int i = 0; i < index; i++) {
+        if (instances.get(i).getName().equals(name)) {
+          name = name + "_" + index;
+          break;
+        }
+      }
+      String prefix = LOG_ROOT + name + "/";
+      logKeys =
+          new String[] {
+            name,
+            prefix + "PeriodicP50Ms",
+            prefix + "PeriodicP99Ms",
+            prefix + "PeriodicMaxMs",
+            prefix + "AfterSchedulerP50Ms",
+            prefix + "AfterSchedulerP99Ms",
+            prefix + "AfterSchedulerMaxMs",
+            prefix + "FastP99Ms",
+            prefix + "FastMaxMs",
+            prefix + "FastJitterP50Ms",
+            prefix + "FastJitterP99Ms",
+            prefix + "FastJitterMaxMs"
+          };
     }
+    return logKeys;
   }
 }
@@ -0,0 +1,66 @@
+package frc.robot.subsystems.flywheel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class FlywheelVelocityEstimatorTest {
+  private static final double SAMPLE_PERIOD = 0.005;
+  private static final double VELOCITY = 50.0;
+  /** The voltage that holds the wheel at {@link #VELOCITY}. */
+  private static final double VOLTS = Configs.kS + Configs.kV * VELOCITY;
+
+  private final FlywheelVelocityEstimator estimator = new FlywheelVelocityEstimator();
+  private final double[] timestamps = new double[1];
+  private final double[] positions = new double[1];
+
+  /** Feeds one sample of the wheel turning at {@link #VELOCITY} since time 0. */
+  private void sample(double timestamp, double fallbackVelocity) {
+    timestamps[0] = timestamp;
+    positions[0] = VELOCITY * timestamp;
+    estimator.update(timestamps, positions, 1, VOLTS, fallbackVelocity, timestamp);
+  }
+
+  /** Runs the wheel at a constant velocity for a second, starting from a wrong estimate. */
+  private double converge() {
+    double time = 0.0;
+    for (int i = 0; i < 200; i++) {
+      sample(time, 0.0);
+      time += SAMPLE_PERIOD;
+    }
+    return time - SAMPLE_PERIOD;
+  }
+
+  @Test
+  void convergesOnAConstantVelocity() {
+    converge();
+
+    assertEquals(VELOCITY, estimator.getEstimatedVelocity(), 0.5);
+    assertEquals(0.0, estimator.getEstimatedAcceleration(), 5.0);
+  }
+
+  @Test
+  void resetsAfterAGapInTheSamples() {
+    double last = converge();
+
+    // a gap just within the limit keeps the estimate and ignores the fallback
+    double time = last + FlywheelVelocityEstimator.MAX_SAMPLE_GAP * 0.9;
+    sample(time, 20.0);
+    assertEquals(VELOCITY, estimator.getEstimatedVelocity(), 0.5);
+
+    // a longer one restarts the filter from the fallback
+    sample(time + FlywheelVelocityEstimator.MAX_SAMPLE_GAP * 1.5, 20.0);
+    assertEquals(20.0, estimator.getEstimatedVelocity());
+    assertEquals(0.0, estimator.getEstimatedDisturbance());
+  }
+
+  @Test
+  void resetsWhenTimeGoesBackwards() {
+    double last = converge();
+
+    sample(last - SAMPLE_PERIOD * 10, 20.0);
+
+    assertEquals(20.0, estimator.getEstimatedVelocity());
+    assertEquals(0.0, estimator.getEstimatedDisturbance());
+  }
+}
@@ -0,0 +1,81 @@
+package frc.robot.subsystems.flywheel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ShotRecoveryTest {
+  private static final double LOOP = 0.02;
+  private static final double SETPOINT = 50.0;
+  private static final double SETTLED_CURRENT = 20.0;
+
+  private final ShotRecovery recovery = new ShotRecovery();
+  private double now = 0.0;
+
+  private void loop(double velocity, double current) {
+    now += LOOP;
+    recovery.update(now, SETPOINT, velocity, current);
+  }
+
+  @BeforeEach
+  void settle() {
+    for (int i = 0; i < 5; i++) {
+      loop(SETPOINT, SETTLED_CURRENT);
+    }
+  }
+
+  @Test
+  void aShotNeedsBothAVelocityDropAndACurrentRise() {
+    double drop = Configs.SHOT_MIN_VELOCITY_DROP + 1.0;
+    double rise = Configs.SHOT_MIN_CURRENT_RISE + 5.0;
+
+    loop(SETPOINT - drop, SETTLED_CURRENT);
+    loop(SETPOINT, SETTLED_CURRENT);
+    loop(SETPOINT, SETTLED_CURRENT + rise);
+    loop(SETPOINT, SETTLED_CURRENT);
+
+    assertEquals(0, recovery.getShotCount());
+    assertFalse(recovery.isRecovering());
+
+    loop(SETPOINT - drop, SETTLED_CURRENT + rise);
+
+    assertEquals(1, recovery.getShotCount());
+    assertTrue(recovery.isRecovering());
+    assertEquals(Configs.SHOT_BOOST_GAIN * drop, recovery.getBoostVolts(), 1e-9);
+  }
+
+  @Test
+  void theBoostIsLimited() {
+    loop(SETPOINT / 2, SETTLED_CURRENT + 2 * Configs.SHOT_MIN_CURRENT_RISE);
+
+    assertEquals(1, recovery.getShotCount());
+    assertEquals(Configs.SHOT_MAX_BOOST, recovery.getBoostVolts());
+  }
+
+  @Test
+  void theBoostEndsAfterItsWindow() {
+    double shotVelocity = SETPOINT - 2 * Configs.SHOT_MIN_VELOCITY_DROP;
+    loop(shotVelocity, SETTLED_CURRENT + 2 * Configs.SHOT_MIN_CURRENT_RISE);
+    double shotTime = now;
+
+    // still below speed, so boosted until the window runs out
+    while (now + LOOP - shotTime < Configs.SHOT_BOOST_WINDOW) {
+      loop(shotVelocity, SETTLED_CURRENT);
+      assertTrue(recovery.getBoostVolts() > 0.0);
+    }
+    loop(shotVelocity, SETTLED_CURRENT);
+
+    assertEquals(0.0, recovery.getBoostVolts());
+    assertTrue(recovery.isRecovering());
+
+    // back at speed, the recovery is timed from the shot
+    loop(SETPOINT, SETTLED_CURRENT);
+
+    assertFalse(recovery.isRecovering());
+    assertEquals(now - shotTime, recovery.getLastRecoveryTime(), 1e-9);
+    assertEquals(1, recovery.getShotCount());
+  }
+}
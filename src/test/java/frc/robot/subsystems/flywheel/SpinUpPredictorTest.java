@@ -0,0 +1,55 @@
+package frc.robot.subsystems.flywheel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SpinUpPredictorTest {
+  private static final double SETPOINT = 60.0;
+  private static final double BATTERY = 12.0;
+
+  private final SpinUpPredictor predictor = new SpinUpPredictor();
+
+  @Test
+  void atSpeedIsReadyNow() {
+    assertEquals(0.0, predictor.timeToReady(SETPOINT, SETPOINT, BATTERY));
+    double tolerance = Configs.atSpeedTolerance(SETPOINT);
+    assertEquals(0.0, predictor.timeToReady(SETPOINT - tolerance, SETPOINT, BATTERY));
+    assertEquals(0.0, predictor.timeToReady(SETPOINT + tolerance, SETPOINT, BATTERY));
+  }
+
+  @Test
+  void fartherFromTheSetpointTakesLonger() {
+    double previous = 0.0;
+    for (double velocity = SETPOINT - 2.0; velocity >= 0.0; velocity -= 2.0) {
+      double time = predictor.timeToReady(velocity, SETPOINT, BATTERY);
+      assertTrue(time > previous, "spinning up from " + velocity + " took " + time);
+      assertTrue(Double.isFinite(time));
+      previous = time;
+    }
+
+    previous = 0.0;
+    for (double velocity = SETPOINT + 2.0; velocity <= SETPOINT + 30.0; velocity += 2.0) {
+      double time = predictor.timeToReady(velocity, SETPOINT, BATTERY);
+      assertTrue(time > previous, "slowing down from " + velocity + " took " + time);
+      assertTrue(Double.isFinite(time));
+      previous = time;
+    }
+  }
+
+  @Test
+  void aLowerBatteryTakesLonger() {
+    assertTrue(
+        predictor.timeToReady(0.0, SETPOINT, 9.0) > predictor.timeToReady(0.0, SETPOINT, BATTERY));
+  }
+
+  @Test
+  void anUnreachableSetpointIsNever() {
+    // holding this setpoint takes more than the battery has
+    double setpoint = (8.0 - Configs.kS) / Configs.kV + 5.0;
+    assertEquals(Double.POSITIVE_INFINITY, predictor.timeToReady(0.0, setpoint, 8.0));
+    assertEquals(Double.POSITIVE_INFINITY, predictor.timeToReady(0.0, SETPOINT, 0.0));
+    assertEquals(Double.POSITIVE_INFINITY, predictor.timeToReady(0.0, SETPOINT, Double.NaN));
+  }
+}
@@ -0,0 +1,152 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class DiagnosticsTest {
+  private static final long MILLISECOND = 1_000_000;
+
+  private record Message(int channel, double value, int repeats, int suppressed, boolean summary) {}
+
+  private final List<Message> messages = new ArrayList<>();
+  private long now = 0;
+
+  private int drain(DiagnosticsBuffer buffer) {
+    return buffer.drain(
+        (channel, value, repeats, suppressed, summary) ->
+            messages.add(new Message(channel, value, repeats, suppressed, summary)));
+  }
+
+  private Diagnostics.Channel channel(DiagnosticsBuffer buffer, long minIntervalNanos) {
+    return new Diagnostics.Channel(0, "test", minIntervalNanos, buffer, () -> now);
+  }
+
+  @Test
+  void eachProducersMessagesAreDrainedInOrder() throws InterruptedException {
+    var buffer = new DiagnosticsBuffer(64);
+    int producers = 4;
+    int perProducer = 2000;
+    var threads = new ArrayList<Thread>();
+    for (int p = 0; p < producers; p++) {
+      int channel = p;
+      threads.add(
+          new Thread(
+              () -> {
+                for (int i = 0; i < perProducer; i++) {
+                  // the consumer keeps up eventually, so retry instead of losing the message
+                  while (!buffer.offer(channel, i, 0, 0, false)) {
+                    Thread.onSpinWait();
+                  }
+                }
+              }));
+    }
+    threads.forEach(Thread::start);
+    // drain while the producers wrap around the small buffer many times
+    while (messages.size() < producers * perProducer) {
+      drain(buffer);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(producers * perProducer, messages.size());
+    int[] next = new int[producers];
+    for (Message message : messages) {
+      assertEquals(next[message.channel()], message.value());
+      next[message.channel()]++;
+    }
+    assertEquals(0, drain(buffer));
+  }
+
+  @Test
+  void newMessagesAreDroppedAndCountedWhenFull() {
+    var buffer = new DiagnosticsBuffer(8);
+    for (int i = 0; i < 8; i++) {
+      assertTrue(buffer.offer(0, i, 0, 0, false));
+    }
+
+    assertFalse(buffer.offer(0, 8, 0, 0, false));
+    assertFalse(buffer.offer(0, 9, 0, 0, false));
+    assertEquals(2, buffer.getDroppedCount());
+
+    // the messages already held are kept, not overwritten
+    assertEquals(8, drain(buffer));
+    for (int i = 0; i < 8; i++) {
+      assertEquals(i, messages.get(i).value());
+    }
+
+    // and there is room again once drained
+    assertTrue(buffer.offer(0, 10, 0, 0, false));
+    assertEquals(1, drain(buffer));
+    assertEquals(10, messages.get(8).value());
+    assertEquals(2, buffer.getDroppedCount());
+  }
+
+  @Test
+  void repeatedValuesAreCountedAndSummarized() {
+    var buffer = new DiagnosticsBuffer(8);
+    var channel = channel(buffer, 0);
+
+    channel.log(1);
+    for (int i = 0; i < 3; i++) {
+      now += MILLISECOND;
+      channel.log(1);
+    }
+    now += MILLISECOND;
+    channel.log(2);
+    drain(buffer);
+
+    // the repeats of 1 are only reported alongside the next different value
+    assertEquals(
+        List.of(new Message(0, 1, 0, 0, false), new Message(0, 2, 3, 0, false)), messages);
+
+    // a value that keeps repeating is summarized every few seconds
+    messages.clear();
+    long start = now;
+    while (now - start < Diagnostics.REPEAT_SUMMARY_NANOS) {
+      now += 100 * MILLISECOND;
+      channel.log(2);
+    }
+    drain(buffer);
+
+    assertEquals(1, messages.size());
+    Message summary = messages.get(0);
+    assertTrue(summary.summary());
+    assertEquals(2, summary.value());
+    assertEquals(Diagnostics.REPEAT_SUMMARY_NANOS / (100 * MILLISECOND), summary.repeats());
+  }
+
+  @Test
+  void differentValuesFasterThanTheIntervalAreRateLimited() {
+    var buffer = new DiagnosticsBuffer(8);
+    var channel = channel(buffer, 500 * MILLISECOND);
+
+    channel.log(1);
+    now += 100 * MILLISECOND;
+    channel.log(2);
+    now += 100 * MILLISECOND;
+    channel.log(3);
+    drain(buffer);
+
+    assertEquals(List.of(new Message(0, 1, 0, 0, false)), messages);
+
+    // the next value after the interval is printed with the number dropped before it
+    now += 300 * MILLISECOND;
+    channel.log(4);
+    drain(buffer);
+
+    assertEquals(new Message(0, 4, 0, 2, false), messages.get(1));
+    // and starts a new interval
+    now += 499 * MILLISECOND;
+    channel.log(5);
+    assertEquals(0, drain(buffer));
+    assertEquals(0, buffer.getDroppedCount());
+  }
+}
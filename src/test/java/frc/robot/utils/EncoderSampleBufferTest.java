@@ -0,0 +1,92 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class EncoderSampleBufferTest {
+  private final double[] timestamps = new double[16];
+  private final double[] positions = new double[16];
+  private final double[] velocities = new double[16];
+
+  @Test
+  void capacityIsRoundedUpToAPowerOfTwo() {
+    assertEquals(8, new EncoderSampleBuffer(5).capacity());
+    assertEquals(8, new EncoderSampleBuffer(8).capacity());
+    assertEquals(128, new EncoderSampleBuffer(100).capacity());
+  }
+
+  @Test
+  void drainingAnEmptyBufferReturnsNothing() {
+    var buffer = new EncoderSampleBuffer(4);
+
+    assertEquals(0, buffer.drain(timestamps, positions, velocities));
+  }
+
+  @Test
+  void samplesAreDrainedOldestFirstAcrossTheWrap() {
+    var buffer = new EncoderSampleBuffer(4);
+    int next = 0;
+    // each round ends further around the ring, so the indices wrap several times
+    for (int round = 0; round < 5; round++) {
+      int offered = round % 4 + 1;
+      for (int i = 0; i < offered; i++) {
+        assertTrue(buffer.offer(next, next * 10.0, next * 100.0));
+        next++;
+      }
+
+      int count = buffer.drain(timestamps, positions, velocities);
+
+      assertEquals(offered, count);
+      for (int i = 0; i < count; i++) {
+        double expected = next - offered + i;
+        assertEquals(expected, timestamps[i]);
+        assertEquals(expected * 10.0, positions[i]);
+        assertEquals(expected * 100.0, velocities[i]);
+      }
+    }
+    assertEquals(0, buffer.getDroppedCount());
+  }
+
+  @Test
+  void newSamplesAreDroppedWhenFull() {
+    var buffer = new EncoderSampleBuffer(4);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(buffer.offer(i, i, i));
+    }
+
+    assertFalse(buffer.offer(4, 4, 4));
+    assertFalse(buffer.offer(5, 5, 5));
+    assertEquals(2, buffer.getDroppedCount());
+
+    // the samples already held are kept, not overwritten
+    assertEquals(4, buffer.drain(timestamps, positions, velocities));
+    for (int i = 0; i < 4; i++) {
+      assertEquals(i, timestamps[i]);
+    }
+
+    // and there is room again once drained
+    assertTrue(buffer.offer(6, 6, 6));
+    assertEquals(1, buffer.drain(timestamps, positions, velocities));
+    assertEquals(6, timestamps[0]);
+  }
+
+  @Test
+  void drainingStopsAtTheShortestArray() {
+    var buffer = new EncoderSampleBuffer(8);
+    for (int i = 0; i < 5; i++) {
+      buffer.offer(i, i, i);
+    }
+
+    assertEquals(2, buffer.drain(new double[2], new double[3], new double[4]));
+
+    // the rest stay in the buffer for the next drain
+    assertEquals(3, buffer.drain(timestamps, positions, velocities));
+    assertEquals(2, timestamps[0]);
+    assertEquals(4, timestamps[2]);
+  }
+}
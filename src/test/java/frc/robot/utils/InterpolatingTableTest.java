@@ -0,0 +1,155 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import frc.robot.utils.InterpolatingTable.Interpolation;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InterpolatingTableTest {
+  private static final double EPSILON = 1e-9;
+
+  /** Distance to RPM, with uneven steps like a measured shooter map. */
+  private static final double[] DISTANCES = {1.5, 2.0, 2.5, 3.0, 3.5, 4.0, 4.5, 5.0};
+
+  private static final double[] RPMS = {2400, 2600, 2850, 3100, 3400, 3700, 4050, 4400};
+
+  private static InterpolatingTable table(double[] keys, double[] values, Interpolation mode) {
+    return new InterpolatingTable(keys, new double[][] {values}, new String[] {"rpm"}, mode);
+  }
+
+  @Test
+  void linearInterpolatesBetweenRows() {
+    var table = table(new double[] {0, 1, 3}, new double[] {10, 20, 40}, Interpolation.LINEAR);
+
+    assertEquals(10, table.get(0), EPSILON);
+    assertEquals(15, table.get(0.5), EPSILON);
+    assertEquals(20, table.get(1), EPSILON);
+    assertEquals(35, table.get(2.5), EPSILON);
+  }
+
+  @Test
+  void splinePassesThroughEveryRow() {
+    var table = table(DISTANCES, RPMS, Interpolation.SPLINE);
+
+    for (int i = 0; i < DISTANCES.length; i++) {
+      assertEquals(RPMS[i], table.get(DISTANCES[i]), EPSILON);
+    }
+  }
+
+  @Test
+  void keysOutsideTheTableAreClampedToItsEnds() {
+    for (Interpolation mode : Interpolation.values()) {
+      var table = table(DISTANCES, RPMS, mode);
+
+      assertEquals(2400, table.get(0.0), EPSILON);
+      assertEquals(2400, table.get(Double.NEGATIVE_INFINITY), EPSILON);
+      assertEquals(4400, table.get(9.0), EPSILON);
+      assertEquals(4400, table.get(Double.POSITIVE_INFINITY), EPSILON);
+    }
+  }
+
+  @Test
+  void splineOfAMonotoneTableIsMonotone() {
+    var table = table(DISTANCES, RPMS, Interpolation.SPLINE);
+
+    double previous = table.get(DISTANCES[0]);
+    for (double d = DISTANCES[0]; d <= DISTANCES[DISTANCES.length - 1]; d += 0.001) {
+      double rpm = table.get(d);
+      assertTrue(rpm >= previous - EPSILON, "decreased at " + d);
+      previous = rpm;
+    }
+  }
+
+  @Test
+  void splineNeverOvershootsBetweenRows() {
+    // a plateau and a sharp step, where an unconstrained cubic spline would overshoot
+    double[] keys = {0, 1, 2, 3, 4};
+    double[] values = {0, 1, 1, 10, 10.5};
+    var table = table(keys, values, Interpolation.SPLINE);
+
+    for (int i = 0; i < keys.length - 1; i++) {
+      double low = Math.min(values[i], values[i + 1]);
+      double high = Math.max(values[i], values[i + 1]);
+      for (int step = 0; step <= 100; step++) {
+        double t = step / 100.0;
+        double value = table.get(keys[i] + t * (keys[i + 1] - keys[i]));
+        assertTrue(value >= low - EPSILON && value <= high + EPSILON, "overshot at " + (i + t));
+      }
+    }
+  }
+
+  @Test
+  void lookupsInAnyOrderMatchTheCachedSegment() {
+    var cached = table(DISTANCES, RPMS, Interpolation.SPLINE);
+    double[] keys = {4.9, 1.6, 1.6, 3.2, 3.7, 2.1, 5.0, 1.5, 2.5, 4.4, 3.0};
+
+    for (double key : keys) {
+      // a fresh table has no cached segment to reuse
+      var fresh = table(DISTANCES, RPMS, Interpolation.SPLINE);
+      assertEquals(fresh.get(key), cached.get(key), EPSILON, "at " + key);
+    }
+  }
+
+  @Test
+  void nanKeysReturnNanWithoutBreakingLaterLookups() {
+    var table = table(DISTANCES, RPMS, Interpolation.SPLINE);
+
+    assertTrue(Double.isNaN(table.get(Double.NaN)));
+    double[] out = new double[1];
+    table.getAll(Double.NaN, out);
+    assertTrue(Double.isNaN(out[0]));
+
+    assertEquals(3100, table.get(3.0), EPSILON);
+    assertEquals(2600, table.get(2.0), EPSILON);
+  }
+
+  @Test
+  void getAllInterpolatesEveryColumn() {
+    var table =
+        new InterpolatingTable(
+            new double[] {0, 2},
+            new double[][] {{100, 200}, {10, 30}},
+            new String[] {"rpm", "hood"},
+            Interpolation.LINEAR);
+    double[] out = new double[2];
+
+    table.getAll(1, out);
+
+    assertArrayEquals(new double[] {150, 20}, out, EPSILON);
+    assertEquals(1, table.getColumn("hood"));
+    assertEquals(20, table.get(1, table.getColumn("hood")), EPSILON);
+  }
+
+  @Test
+  void rejectsInvalidTables() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> table(new double[] {0, 1, 1}, new double[] {0, 1, 2}, Interpolation.LINEAR));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> table(new double[] {0}, new double[] {0}, Interpolation.LINEAR));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> table(DISTANCES, RPMS, Interpolation.LINEAR).getColumn("hood"));
+  }
+
+  @Test
+  void loadsUnsortedCsvRows(@TempDir Path directory) throws IOException {
+    Path file = directory.resolve("map.csv");
+    Files.writeString(file, "# comment\ndistance_m,rpm\n\n3.0,3000\n1.0,1000\n2.0,2000\n");
+
+    var table = InterpolatingTable.fromCsv(file, Interpolation.LINEAR);
+
+    assertEquals(1500, table.get(1.5, table.getColumn("rpm")), EPSILON);
+    assertEquals(2500, table.get(2.5), EPSILON);
+  }
+}
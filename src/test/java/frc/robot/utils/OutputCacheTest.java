@@ -0,0 +1,79 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class OutputCacheTest {
+  private static final double KEEP_ALIVE = 0.5;
+  private static final Object VELOCITY = new Object();
+  private static final Object VOLTAGE = new Object();
+
+  private final OutputCache cache = new OutputCache(KEEP_ALIVE);
+
+  @BeforeAll
+  static void pauseTime() {
+    assertTrue(HAL.initialize(500, 0));
+    SimHooks.pauseTiming();
+  }
+
+  @AfterAll
+  static void resumeTime() {
+    SimHooks.resumeTiming();
+  }
+
+  @Test
+  void repeatedOutputsAreSuppressed() {
+    assertTrue(cache.shouldSend(VELOCITY, 0, 10.0, 0.5));
+    assertFalse(cache.shouldSend(VELOCITY, 0, 10.0, 0.5));
+    assertFalse(cache.shouldSend(VELOCITY, 0, 10.0, 0.5));
+
+    assertEquals(1, cache.getSentCount());
+    assertEquals(2, cache.getSuppressedCount());
+  }
+
+  @Test
+  void anyChangeIsSent() {
+    cache.shouldSend(VELOCITY, 0, 10.0, 0.5);
+
+    assertTrue(cache.shouldSend(VELOCITY, 0, 11.0, 0.5));
+    assertTrue(cache.shouldSend(VELOCITY, 0, 11.0, 0.0));
+    assertTrue(cache.shouldSend(VELOCITY, 1, 11.0, 0.0));
+    assertTrue(cache.shouldSend(VOLTAGE, 1, 11.0, 0.0));
+    assertEquals(5, cache.getSentCount());
+    assertEquals(0, cache.getSuppressedCount());
+  }
+
+  @Test
+  void unchangedOutputsAreResentAfterTheKeepAlive() {
+    cache.shouldSend(VELOCITY, 0, 10.0, 0.0);
+
+    SimHooks.stepTiming(0.4);
+    assertFalse(cache.shouldSend(VELOCITY, 0, 10.0, 0.0));
+
+    SimHooks.stepTiming(0.1);
+    assertTrue(cache.shouldSend(VELOCITY, 0, 10.0, 0.0));
+
+    // the keep-alive restarts from the resend
+    SimHooks.stepTiming(0.02);
+    assertFalse(cache.shouldSend(VELOCITY, 0, 10.0, 0.0));
+  }
+
+  @Test
+  void invalidatingSendsTheNextOutputOnce() {
+    cache.shouldSend(VELOCITY, 0, 10.0, 0.0);
+
+    cache.invalidate();
+
+    assertTrue(cache.shouldSend(VELOCITY, 0, 10.0, 0.0));
+    assertFalse(cache.shouldSend(VELOCITY, 0, 10.0, 0.0));
+  }
+}
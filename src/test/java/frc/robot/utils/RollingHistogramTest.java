@@ -0,0 +1,82 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class RollingHistogramTest {
+  @Test
+  void emptyHistogramReportsZero() {
+    var histogram = new RollingHistogram(10);
+
+    assertEquals(0, histogram.size());
+    assertEquals(0, histogram.latest());
+    assertEquals(0, histogram.percentile(0.5));
+    assertEquals(0, histogram.max());
+  }
+
+  @Test
+  void percentilesUseNearestRank() {
+    var histogram = new RollingHistogram(100);
+    // recorded out of order, so the percentiles have to sort
+    for (int i = 100; i >= 1; i--) {
+      histogram.record(i);
+    }
+
+    assertEquals(1, histogram.percentile(0.0));
+    assertEquals(50, histogram.percentile(0.5));
+    assertEquals(99, histogram.percentile(0.99));
+    assertEquals(100, histogram.max());
+  }
+
+  @Test
+  void percentilesOfAPartialWindowOnlyUseRecordedSamples() {
+    var histogram = new RollingHistogram(100);
+    histogram.record(30);
+    histogram.record(10);
+    histogram.record(20);
+
+    assertEquals(3, histogram.size());
+    assertEquals(10, histogram.percentile(0.0));
+    assertEquals(20, histogram.percentile(0.5));
+    assertEquals(30, histogram.max());
+  }
+
+  @Test
+  void oldestSamplesAreEvicted() {
+    var histogram = new RollingHistogram(4);
+    histogram.record(1000);
+    for (long sample : new long[] {20, 30, 40, 1}) {
+      histogram.record(sample);
+    }
+
+    assertEquals(4, histogram.size());
+    assertEquals(1, histogram.latest());
+    assertEquals(40, histogram.max());
+    assertEquals(20, histogram.percentile(0.5));
+  }
+
+  @Test
+  void recordingAfterAQueryUpdatesThePercentiles() {
+    var histogram = new RollingHistogram(4);
+    histogram.record(5);
+    assertEquals(5, histogram.max());
+
+    histogram.record(7);
+
+    assertEquals(7, histogram.max());
+    assertEquals(5, histogram.percentile(0.5));
+  }
+
+  @Test
+  void nearestRankUsesOnlyTheLeadingSamples() {
+    long[] sorted = {10, 20, 30, 40, 0, 0};
+
+    assertEquals(10, RollingHistogram.nearestRank(sorted, 4, 0.0));
+    assertEquals(20, RollingHistogram.nearestRank(sorted, 4, 0.5));
+    assertEquals(40, RollingHistogram.nearestRank(sorted, 4, 1.0));
+    assertEquals(0, RollingHistogram.nearestRank(sorted, 0, 0.5));
+  }
+}
@@ -0,0 +1,149 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.revrobotics.REVLibError;
+import com.revrobotics.spark.config.SparkFlexConfig;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class SparkConfigApplierTest {
+  private static final long TIMEOUT_MS = 2000;
+
+  /** A motor controller that records each config sent and answers with the queued results. */
+  private static class FakeDevice implements SparkConfigApplier.Configurer {
+    private final List<SparkFlexConfig> configs = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> times = Collections.synchronizedList(new ArrayList<>());
+    private final ConcurrentLinkedQueue<REVLibError> results = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public REVLibError configure(SparkFlexConfig config) {
+      configs.add(config);
+      times.add(System.currentTimeMillis());
+      REVLibError result = results.poll();
+      return result != null ? result : REVLibError.kOk;
+    }
+  }
+
+  private final FakeDevice device = new FakeDevice();
+
+  private static void awaitApplied(SparkConfigApplier applier) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+    while (applier.isPending()) {
+      assertTrue(System.currentTimeMillis() < deadline, "timed out waiting for the apply");
+      Thread.sleep(5);
+    }
+  }
+
+  @Test
+  void aBurstOfSubmissionsIsAppliedOnceWithTheLatestVerifiers() throws InterruptedException {
+    var applier =
+        new SparkConfigApplier(device, "TestApplier", CompletableFuture.completedFuture(null));
+    var verified = new ArrayList<Integer>();
+
+    long lastSubmit = 0;
+    for (int i = 0; i < 5; i++) {
+      int submission = i;
+      var config = new SparkFlexConfig();
+      config.closedLoop.p(i);
+      lastSubmit = System.currentTimeMillis();
+      applier.submit(
+          "PID",
+          config,
+          () -> {
+            synchronized (verified) {
+              verified.add(submission);
+            }
+            return true;
+          });
+      // well inside the coalescing window
+      Thread.sleep(SparkConfigApplier.COALESCE_WINDOW_MS / 5);
+    }
+    awaitApplied(applier);
+
+    assertEquals(1, device.configs.size());
+    assertTrue(device.times.get(0) - lastSubmit >= SparkConfigApplier.COALESCE_WINDOW_MS);
+    // a later submission with the same key replaces the earlier verifiers
+    synchronized (verified) {
+      assertEquals(List.of(4), verified);
+    }
+    assertTrue(applier.isVerified());
+    assertEquals(0, applier.getFailureCount());
+  }
+
+  @Test
+  void changesWaitForTheStartupConfiguration() throws InterruptedException {
+    var startup = new CompletableFuture<Void>();
+    var applier = new SparkConfigApplier(device, "TestApplier", startup);
+
+    applier.submit("PID", new SparkFlexConfig(), () -> true);
+    Thread.sleep(3 * SparkConfigApplier.COALESCE_WINDOW_MS);
+
+    assertTrue(applier.isPending());
+    assertTrue(device.configs.isEmpty());
+
+    // a failed startup configuration still lets the changes through
+    startup.completeExceptionally(new RuntimeException("startup failed"));
+    awaitApplied(applier);
+
+    assertEquals(1, device.configs.size());
+  }
+
+  @Test
+  void failedAttemptsAreRetriedWithBackoff() throws InterruptedException {
+    var applier =
+        new SparkConfigApplier(device, "TestApplier", CompletableFuture.completedFuture(null));
+    device.results.add(REVLibError.kTimeout);
+    device.results.add(REVLibError.kTimeout);
+    var config = new SparkFlexConfig();
+
+    applier.submit("PID", config, () -> true);
+    awaitApplied(applier);
+
+    // the same merged config is resent each attempt, with a longer wait before each retry
+    assertEquals(3, device.configs.size());
+    assertSame(device.configs.get(0), device.configs.get(2));
+    long firstWait = device.times.get(1) - device.times.get(0);
+    long secondWait = device.times.get(2) - device.times.get(1);
+    // 50 and 100 ms, less the clock's granularity
+    assertTrue(firstWait >= 45, "first retry after " + firstWait + " ms");
+    assertTrue(secondWait >= 95, "second retry after " + secondWait + " ms");
+    assertTrue(applier.isVerified());
+    assertEquals(REVLibError.kOk, applier.getLastError());
+    assertEquals(0, applier.getFailureCount());
+  }
+
+  @Test
+  void aBatchFailsAfterThreeAttempts() throws InterruptedException {
+    var applier =
+        new SparkConfigApplier(device, "TestApplier", CompletableFuture.completedFuture(null));
+    var verifications = new AtomicInteger();
+
+    // configure succeeds, but the values never read back
+    applier.submit("PID", new SparkFlexConfig(), () -> verifications.incrementAndGet() < 0);
+    awaitApplied(applier);
+
+    assertEquals(3, device.configs.size());
+    assertEquals(3, verifications.get());
+    assertFalse(applier.isVerified());
+    assertEquals(1, applier.getFailureCount());
+
+    // the next change is applied on its own
+    applier.submit("PID", new SparkFlexConfig(), () -> true);
+    awaitApplied(applier);
+
+    assertEquals(4, device.configs.size());
+    assertTrue(applier.isVerified());
+    assertEquals(1, applier.getFailureCount());
+  }
+}
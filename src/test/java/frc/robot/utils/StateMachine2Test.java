@@ -0,0 +1,386 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Commands;
+import edu.wpi.first.wpilibj2.command.InstantCommand;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.button.Trigger;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StateMachine2Test {
+  private final SubsystemBase subsystem = new SubsystemBase() {};
+  private final List<String> events = new ArrayList<>();
+
+  @BeforeAll
+  static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @BeforeEach
+  void enable() {
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+  }
+
+  @AfterEach
+  void resetScheduler() {
+    CommandScheduler.getInstance().cancelAll();
+    CommandScheduler.getInstance().unregisterAllSubsystems();
+  }
+
+  /** Runs one robot loop of the machine, in the order Robot runs it. */
+  private static void loop(StateMachine2 machine) {
+    machine.periodic();
+    CommandScheduler.getInstance().run();
+    machine.periodicAfterScheduler();
+  }
+
+  /** A command that records an event when it is scheduled. */
+  private InstantCommand record(String event) {
+    return new InstantCommand(() -> events.add(event));
+  }
+
+  /** A state that records its entries and exits. */
+  private State2 recorded(State2 state) {
+    return state
+        .onEnter(record("enter " + state.getName()))
+        .onExit(record("exit " + state.getName()));
+  }
+
+  @Test
+  void startsInTheDefaultState() {
+    var machine = new StateMachine2(subsystem);
+    machine.state("A");
+    State2 off = machine.defaultState("OFF").onEnter(record("enter OFF"));
+
+    loop(machine);
+
+    assertSame(off, machine.getActiveState());
+    assertEquals(List.of("enter OFF"), events);
+  }
+
+  @Test
+  void firstTrueEndConditionWins() {
+    var machine = new StateMachine2(subsystem);
+    State2 b = machine.state("B");
+    State2 c = machine.state("C");
+    machine
+        .defaultState("A")
+        .withEndCondition(() -> false, () -> c)
+        .withEndCondition(() -> true, () -> b)
+        .withEndCondition(() -> true, () -> c);
+
+    loop(machine);
+
+    assertSame(b, machine.getActiveState());
+  }
+
+  @Test
+  void endConditionsAreLevelTriggered() {
+    var machine = new StateMachine2(subsystem);
+    boolean[] condition = {false};
+    State2 b = machine.state("B");
+    State2 a = machine.defaultState("A").withEndCondition(() -> condition[0], () -> b);
+    b.withEndCondition(() -> condition[0], () -> a);
+
+    loop(machine);
+    assertSame(a, machine.getActiveState());
+
+    // a condition that stays true keeps transitioning, once per loop
+    condition[0] = true;
+    loop(machine);
+    assertSame(b, machine.getActiveState());
+    loop(machine);
+    assertSame(a, machine.getActiveState());
+  }
+
+  @Test
+  void transitionsExitBeforeEntering() {
+    var machine = new StateMachine2(subsystem);
+    State2 b = machine.state("B").onEnter(record("enter B"));
+    machine
+        .defaultState("A")
+        .onExit(record("exit A"))
+        .withEndCondition(() -> true, () -> b);
+
+    loop(machine);
+
+    assertEquals(List.of("exit A", "enter B"), events);
+  }
+
+  @Test
+  void statesAddedAfterTheFirstLoopAreCompiledIn() {
+    var machine = new StateMachine2(subsystem);
+    boolean[] condition = {false};
+    State2 a = machine.defaultState("A");
+    loop(machine);
+
+    State2 late = machine.state("LATE");
+    a.withEndCondition(() -> condition[0], () -> late);
+    loop(machine);
+    assertSame(a, machine.getActiveState());
+
+    condition[0] = true;
+    loop(machine);
+    assertSame(late, machine.getActiveState());
+    assertEquals(1, machine.getTransitionCount(a, late));
+  }
+
+  @Test
+  void triggersFireOnRisingEdgesOnly() {
+    var machine = new StateMachine2(subsystem);
+    boolean[] pressed = {false};
+    var button = new Trigger(() -> pressed[0]);
+    State2 b = machine.state("B");
+    State2 a = machine.defaultState("A").onTrigger(button, () -> b);
+    b.onTrigger(button, () -> a);
+    loop(machine);
+
+    pressed[0] = true;
+    loop(machine);
+    assertSame(b, machine.getActiveState());
+
+    // still held: B samples it on its first loop, so it is not a new press
+    loop(machine);
+    loop(machine);
+    assertSame(b, machine.getActiveState());
+
+    pressed[0] = false;
+    loop(machine);
+    assertSame(b, machine.getActiveState());
+
+    pressed[0] = true;
+    loop(machine);
+    assertSame(a, machine.getActiveState());
+  }
+
+  @Test
+  void triggerAlreadyTrueWhenEnteredDoesNotFire() {
+    var machine = new StateMachine2(subsystem);
+    boolean[] pressed = {true};
+    State2 c = machine.state("C");
+    State2 b = machine.state("B").onTrigger(new Trigger(() -> pressed[0]), () -> c);
+    machine.defaultState("A").withEndCondition(() -> true, () -> b);
+
+    loop(machine);
+    loop(machine);
+    loop(machine);
+    assertSame(b, machine.getActiveState());
+
+    pressed[0] = false;
+    loop(machine);
+    pressed[0] = true;
+    loop(machine);
+    assertSame(c, machine.getActiveState());
+  }
+
+  @Test
+  void onlyTheActiveStatesTriggersAreEvaluated() {
+    var machine = new StateMachine2(subsystem);
+    int[] polls = {0};
+    var polled =
+        new Trigger(
+            () -> {
+              polls[0]++;
+              return true;
+            });
+    State2 a = machine.defaultState("A");
+    machine.state("B").onTrigger(polled, () -> a);
+
+    for (int i = 0; i < 5; i++) {
+      loop(machine);
+    }
+
+    assertEquals(0, polls[0]);
+  }
+
+  @Test
+  void triggerTargetsAreResolvedWhenTheyFire() {
+    var machine = new StateMachine2(subsystem);
+    boolean[] pressed = {false};
+    State2[] target = {null};
+    machine.defaultState("A").onTrigger(new Trigger(() -> pressed[0]), () -> target[0]);
+
+    // a target that is not ready yet is fine until the trigger fires
+    loop(machine);
+    loop(machine);
+
+    // adding a state recompiles, after which the trigger is sampled again before it can fire
+    target[0] = machine.state("LATE");
+    loop(machine);
+    pressed[0] = true;
+    loop(machine);
+
+    assertSame(target[0], machine.getActiveState());
+  }
+
+  @Test
+  void firingATriggerWithAnInvalidTargetThrows() {
+    var machine = new StateMachine2(subsystem);
+    var other = new StateMachine2(subsystem);
+    State2 foreign = other.defaultState("FOREIGN");
+    boolean[] pressed = {false};
+    machine.defaultState("A").onTrigger(new Trigger(() -> pressed[0]), () -> foreign);
+    loop(machine);
+
+    pressed[0] = true;
+
+    assertThrows(RuntimeException.class, () -> loop(machine));
+  }
+
+  @Test
+  void enteringAParentEntersItsDefaultChildOutermostFirst() {
+    var machine = new StateMachine2(subsystem);
+    State2 parent = recorded(machine.state("P"));
+    State2 first = recorded(parent.defaultChild("P1"));
+    recorded(parent.child("P2"));
+    State2 off = machine.defaultState("OFF").withEndCondition(() -> true, () -> parent);
+
+    assertFalse(machine.isActive(parent));
+    loop(machine);
+
+    assertEquals(List.of("enter P", "enter P1"), events);
+    assertSame(first, machine.getActiveState());
+    assertTrue(machine.isActive(parent));
+    assertTrue(machine.isActive(first));
+    assertFalse(machine.isActive(off));
+  }
+
+  @Test
+  void transitionsToAParentAreCountedUnderItsDefaultChild() {
+    var machine = new StateMachine2(subsystem);
+    State2 parent = machine.state("P");
+    State2 first = parent.defaultChild("P1");
+    State2 second = parent.child("P2");
+    State2 off = machine.defaultState("OFF").withEndCondition(() -> true, () -> parent);
+
+    loop(machine);
+
+    assertEquals(1, machine.getTransitionCount(off, parent));
+    assertEquals(1, machine.getTransitionCount(off, first));
+    assertEquals(0, machine.getTransitionCount(off, second));
+  }
+
+  @Test
+  void transitionsExitInnermostFirstAndEnterOutermostFirst() {
+    var machine = new StateMachine2(subsystem);
+    boolean[] go = {false};
+    State2 p = recorded(machine.defaultState("P"));
+    State2 q = recorded(machine.state("Q"));
+    State2 q1 = recorded(q.defaultChild("Q1"));
+    recorded(p.defaultChild("P1")).withEndCondition(() -> go[0], () -> q1);
+    loop(machine);
+    events.clear();
+
+    go[0] = true;
+    loop(machine);
+
+    assertEquals(List.of("exit P1", "exit P", "enter Q", "enter Q1"), events);
+    assertSame(q1, machine.getActiveState());
+  }
+
+  @Test
+  void siblingTransitionsKeepTheParentRunning() {
+    var machine = new StateMachine2(subsystem);
+    Command parentCommand = Commands.run(() -> {}, subsystem);
+    State2 p = recorded(machine.defaultState("P")).whileRunning(parentCommand);
+    State2 p2 = recorded(p.child("P2"));
+    recorded(p.defaultChild("P1")).withEndCondition(() -> true, () -> p2);
+    loop(machine);
+    events.clear();
+
+    loop(machine);
+
+    assertEquals(List.of("exit P1", "enter P2"), events);
+    assertSame(p2, machine.getActiveState());
+    assertTrue(CommandScheduler.getInstance().isScheduled(parentCommand));
+  }
+
+  @Test
+  void parentTransitionsApplyToItsChildren() {
+    var machine = new StateMachine2(subsystem);
+    boolean[] stop = {false};
+    State2 off = machine.state("OFF");
+    State2 p = machine.defaultState("P").withEndCondition(() -> stop[0], () -> off);
+    p.defaultChild("P1");
+    loop(machine);
+
+    stop[0] = true;
+    loop(machine);
+
+    assertSame(off, machine.getActiveState());
+  }
+
+  @Test
+  void transitioningToAnActiveAncestorReentersIt() {
+    var machine = new StateMachine2(subsystem);
+    boolean[] restart = {false};
+    State2 p = recorded(machine.defaultState("P"));
+    recorded(p.defaultChild("P1")).withEndCondition(() -> restart[0], () -> p);
+    loop(machine);
+    events.clear();
+
+    restart[0] = true;
+    loop(machine);
+
+    assertEquals(List.of("exit P1", "exit P", "enter P", "enter P1"), events);
+  }
+
+  @Test
+  void aParentNeedsADefaultChild() {
+    var machine = new StateMachine2(subsystem);
+    machine.defaultState("P").child("P1");
+
+    assertThrows(RuntimeException.class, () -> loop(machine));
+  }
+
+  @Test
+  void childrenMayNotRequireWhatTheirParentRuns() {
+    var machine = new StateMachine2(subsystem);
+    State2 p = machine.defaultState("P").whileRunning(Commands.run(() -> {}, subsystem));
+    p.defaultChild("P1").whileRunning(Commands.run(() -> {}, subsystem));
+
+    assertThrows(RuntimeException.class, () -> loop(machine));
+  }
+
+  @Test
+  void childSubsystemsAreOnlyUsedByTheChildren() {
+    var hood = new SubsystemBase() {};
+    var machine = new StateMachine2(subsystem, hood);
+    State2 p = machine.defaultState("P").withChildSubsystems(hood);
+    State2 p1 = p.defaultChild("P1");
+
+    p.whileRunning(Commands.run(() -> {}, subsystem));
+    p1.whileRunning(Commands.run(() -> {}, hood));
+    assertThrows(RuntimeException.class, () -> p.onEnter(new InstantCommand(() -> {}, hood)));
+    assertThrows(RuntimeException.class, () -> p1.whileRunning(Commands.run(() -> {}, subsystem)));
+
+    loop(machine);
+    assertSame(p1, machine.getActiveState());
+  }
+
+  @Test
+  void subsystemsRequiredByAStateCanNotBeHandedToItsChildren() {
+    var hood = new SubsystemBase() {};
+    var machine = new StateMachine2(subsystem, hood);
+    State2 p = machine.defaultState("P").whileRunning(Commands.run(() -> {}, hood));
+
+    assertThrows(RuntimeException.class, () -> p.withChildSubsystems(hood));
+  }
+}
@@ -0,0 +1,121 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+class TunableRegistryTest {
+  private final TunableRegistry registry = TunableRegistry.getInstance();
+
+  /** A tunable set directly instead of from the dashboard. */
+  private static class FakeTunable extends LoggedTunableNumber {
+    private double value;
+
+    FakeTunable(String key) {
+      super(key);
+    }
+
+    @Override
+    public double get() {
+      return value;
+    }
+  }
+
+  @Test
+  void onlySubscriptionsWatchingAChangedTunableRunOnceWithAllValues() {
+    var a = new FakeTunable("A");
+    var b = new FakeTunable("B");
+    var c = new FakeTunable("C");
+    var ab = new ArrayList<double[]>();
+    var bc = new ArrayList<double[]>();
+    var cOnly = new ArrayList<double[]>();
+    var bcChanged = new ArrayList<boolean[]>();
+    LoggedTunableNumber.onChange(values -> ab.add(values.clone()), a, b);
+    var bcSubscription = new TunableRegistry.Subscription[1];
+    bcSubscription[0] =
+        LoggedTunableNumber.onChange(
+            values -> {
+              bc.add(values.clone());
+              bcChanged.add(
+                  new boolean[] {bcSubscription[0].hasChanged(0), bcSubscription[0].hasChanged(1)});
+            },
+            b,
+            c);
+    LoggedTunableNumber.onChange(values -> cOnly.add(values.clone()), c);
+
+    a.value = 1;
+    registry.periodic();
+
+    assertEquals(1, ab.size());
+    assertArrayEquals(new double[] {1, 0}, ab.get(0));
+    assertTrue(bc.isEmpty());
+    assertTrue(cOnly.isEmpty());
+
+    // two changes watched by one subscription still run it once
+    b.value = 2;
+    c.value = 3;
+    registry.periodic();
+
+    assertEquals(2, ab.size());
+    assertArrayEquals(new double[] {1, 2}, ab.get(1));
+    assertEquals(1, bc.size());
+    assertArrayEquals(new double[] {2, 3}, bc.get(0));
+    assertArrayEquals(new boolean[] {true, true}, bcChanged.get(0));
+    assertEquals(1, cOnly.size());
+    assertArrayEquals(new double[] {3}, cOnly.get(0));
+
+    c.value = 4;
+    registry.periodic();
+
+    assertEquals(2, ab.size());
+    assertArrayEquals(new double[] {2, 4}, bc.get(1));
+    assertArrayEquals(new boolean[] {false, true}, bcChanged.get(1));
+    assertEquals(2, cOnly.size());
+  }
+
+  @Test
+  void nothingRunsWithoutAChange() {
+    var a = new FakeTunable("Unchanged");
+    var calls = new ArrayList<double[]>();
+    LoggedTunableNumber.onChange(calls::add, a);
+
+    registry.periodic();
+    // a change that is undone before the registry polls is not a change
+    a.value = 1;
+    a.value = 0;
+    registry.periodic();
+
+    assertTrue(calls.isEmpty());
+  }
+
+  @Test
+  void changesAreTrackedPastTheFirst64Tunables() {
+    var tunables = new FakeTunable[65];
+    for (int i = 0; i < tunables.length; i++) {
+      tunables[i] = new FakeTunable("Many/" + i);
+    }
+    var first = new ArrayList<double[]>();
+    var last = new ArrayList<double[]>();
+    LoggedTunableNumber.onChange(values -> first.add(values.clone()), tunables[0]);
+    LoggedTunableNumber.onChange(values -> last.add(values.clone()), tunables[64]);
+
+    // 64 registrations apart, so the same bit of different words
+    tunables[64].value = 5;
+    registry.periodic();
+
+    assertTrue(first.isEmpty());
+    assertEquals(1, last.size());
+    assertArrayEquals(new double[] {5}, last.get(0));
+
+    tunables[0].value = 6;
+    registry.periodic();
+
+    assertEquals(1, first.size());
+    assertEquals(1, last.size());
+  }
+}
@@ -0,0 +1,141 @@
+/* Copyright (c) 2025-2026 FRC 4639. */
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class VirtualSubsystemTest {
+  private final List<String> events = new ArrayList<>();
+
+  /** An instance that records each run, and optionally busy-waits to take a known time. */
+  private class Recorder extends VirtualSubsystem {
+    private final String name;
+    private final Priority priority;
+    private final boolean deferrable;
+    private final long costNanos;
+
+    Recorder(String name, Priority priority, boolean deferrable, long costMillis) {
+      this.name = name;
+      this.priority = priority;
+      this.deferrable = deferrable;
+      this.costNanos = costMillis * 1_000_000;
+    }
+
+    @Override
+    public void periodic() {
+      events.add(name);
+      long start = System.nanoTime();
+      while (System.nanoTime() - start < costNanos) {
+        Thread.onSpinWait();
+      }
+    }
+
+    @Override
+    public void periodicAfterScheduler() {
+      events.add(name + " after");
+    }
+
+    @Override
+    protected String getName() {
+      return name;
+    }
+
+    @Override
+    protected Priority getPriority() {
+      return priority;
+    }
+
+    @Override
+    protected boolean isDeferrable() {
+      return deferrable;
+    }
+  }
+
+  @BeforeEach
+  void reset() {
+    VirtualSubsystem.resetForTesting();
+  }
+
+  @AfterEach
+  void restoreBudget() {
+    VirtualSubsystem.setDeferrableBudget(0.01);
+    VirtualSubsystem.resetForTesting();
+  }
+
+  /** Runs one robot loop and returns what ran, in order. */
+  private List<String> loop() {
+    events.clear();
+    VirtualSubsystem.runAllPeriodic();
+    VirtualSubsystem.runAllPeriodicAfterScheduler();
+    return List.copyOf(events);
+  }
+
+  @Test
+  void runsByPriorityThenConstructionOrderThenDeferrable() {
+    VirtualSubsystem.setDeferrableBudget(1.0);
+    new Recorder("deferrable", VirtualSubsystem.Priority.CRITICAL, true, 0);
+    new Recorder("low", VirtualSubsystem.Priority.LOW, false, 0);
+    new Recorder("normal 1", VirtualSubsystem.Priority.NORMAL, false, 0);
+    new Recorder("critical", VirtualSubsystem.Priority.CRITICAL, false, 0);
+    new Recorder("normal 2", VirtualSubsystem.Priority.NORMAL, false, 0);
+
+    assertEquals(
+        List.of(
+            "critical",
+            "normal 1",
+            "normal 2",
+            "low",
+            "deferrable",
+            "critical after",
+            "normal 1 after",
+            "normal 2 after",
+            "low after",
+            "deferrable after"),
+        loop());
+  }
+
+  @Test
+  void deferrableWorkIsShedOverBudget() {
+    VirtualSubsystem.setDeferrableBudget(-1.0);
+    new Recorder("deferrable", VirtualSubsystem.Priority.NORMAL, true, 0);
+    new Recorder("required", VirtualSubsystem.Priority.LOW, false, 0);
+
+    // neither method of a shed instance runs
+    assertEquals(List.of("required", "required after"), loop());
+  }
+
+  @Test
+  void shedInstancesGoFirstNextLoop() {
+    // each costs 30 ms, so two fit in 45 ms only while the second's cost is still unknown, and
+    // after that only one fits per loop
+    VirtualSubsystem.setDeferrableBudget(0.045);
+    new Recorder("a", VirtualSubsystem.Priority.NORMAL, true, 30);
+    new Recorder("b", VirtualSubsystem.Priority.NORMAL, true, 30);
+    new Recorder("c", VirtualSubsystem.Priority.NORMAL, true, 30);
+
+    assertEquals(List.of("a", "b", "a after", "b after"), loop());
+    assertEquals(List.of("c", "c after"), loop());
+    assertEquals(List.of("a", "a after"), loop());
+    assertEquals(List.of("b", "b after"), loop());
+    assertEquals(List.of("c", "c after"), loop());
+  }
+
+  @Test
+  void shedInstanceRunsAfterTooManyShedsInARow() {
+    VirtualSubsystem.setDeferrableBudget(-1.0);
+    new Recorder("deferrable", VirtualSubsystem.Priority.NORMAL, true, 0);
+
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < VirtualSubsystem.MAX_CONSECUTIVE_SHEDS; i++) {
+        assertEquals(List.of(), loop());
+      }
+      assertEquals(List.of("deferrable", "deferrable after"), loop());
+    }
+  }
+}